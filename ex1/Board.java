@@ -5,6 +5,13 @@
  * The class provides methods to initialize the board, retrieve the size of the board,
  * put a mark at specified coordinates, get the mark at specified coordinates, and
  * check the validity of coordinates.
+ * The marks are kept as two bitboards, one for X and one for O. Boards of up to 8x8 cells
+ * fit in a single long per mark, larger boards use a long[] per mark with whole words per row.
+ * The board also keeps an index of its blank cells, so random players can pick one directly.
+ * Every placed mark is pushed on an undo stack and folded into a 64-bit Zobrist hash, so search
+ * players can make and unmake moves on the board itself and key their caches on the position.
+ * Once a canonical hash is asked for, the hashes of the 8 rotations and reflections of the
+ * position are kept up to date as well, so caches can key symmetric positions on a single hash.
  */
 
 
@@ -12,28 +19,104 @@ public class Board {
 
     private final int boardSize;
 
+    private final int winStreak;
+
     private static final int DEFAULT_BOARD_SIZE = 4;
 
+    private static final int SMALL_BOARD_LIMIT = 8;
+
+    private static final int WORD_SHIFT = 6;
+
+    private static final int WORD_MASK = 63;
+
+    private static final int NO_MOVE = -1;
+
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+
+    /**
+     * The number of symmetries of a square board: 4 rotations, each optionally reflected.
+     */
+    public static final int SYMMETRIES = 8;
+
+    private static final int IDENTITY = 0;
+
+    private static final int ROTATE_90 = 1;
+
+    private static final int ROTATE_180 = 2;
+
+    private static final int ROTATE_270 = 3;
+
+    private static final int MIRROR_COLUMNS = 4;
+
+    private static final int MIRROR_ROWS = 5;
+
+    private static final int TRANSPOSE = 6;
+
+    private static final int ANTI_TRANSPOSE = 7;
+
+
+    private final int wordsPerRow;
+
+    private long xBits;
+
+    private long oBits;
+
+    private final long[] xRows;
+
+    private final long[] oRows;
+
+    private final int[] blankCells;
+
+    private final int[] blankPositions;
+
+    private int blankCount;
 
-    private final Mark[][] board;
+    private final int[] moves;
+
+    private int moveCount;
+
+    private final long[] symmetryHashes = new long[SYMMETRIES];
+
+    private boolean trackingSymmetries = false;
 
     /**
      * Default constructor to create a Board with the default size = 4 and initialize it.
+     * A streak of 3 marks wins on the default board.
      */
     public Board() {
-        boardSize = DEFAULT_BOARD_SIZE;
-        board = new Mark[boardSize][boardSize];
-        initializeBoard();
+        this(DEFAULT_BOARD_SIZE, DEFAULT_BOARD_SIZE - 1);
     }
 
     /**
      * Constructor to create a Board with a custom size and initialize it.
+     * A streak over a whole row, column or diagonal wins on this board.
      *
      * @param size The size of the square board.
      */
     public Board(int size) {
+        this(size, size);
+    }
+
+    /**
+     * Constructor to create a Board with a custom size and win streak and initialize it.
+     *
+     * @param size      The size of the square board.
+     * @param winStreak The streak length required for a win, so players can plan ahead.
+     */
+    public Board(int size, int winStreak) {
         boardSize = size;
-        board = new Mark[boardSize][boardSize];
+        this.winStreak = winStreak;
+        wordsPerRow = (boardSize + WORD_MASK) >>> WORD_SHIFT;
+        if (boardSize <= SMALL_BOARD_LIMIT) {
+            xRows = null;
+            oRows = null;
+        } else {
+            xRows = new long[boardSize * wordsPerRow];
+            oRows = new long[boardSize * wordsPerRow];
+        }
+        blankCells = new int[boardSize * boardSize];
+        blankPositions = new int[boardSize * boardSize];
+        moves = new int[boardSize * boardSize];
         initializeBoard();
     }
 
@@ -46,8 +129,18 @@ public class Board {
         return boardSize;
     }
 
+    /**
+     * Retrieves the streak length required for a win on the board.
+     *
+     * @return The streak length for a win.
+     */
+    public int getWinStreak() {
+        return winStreak;
+    }
+
     /**
      * Puts a mark on the board at the specified coordinates.
+     * The mark can be taken back with unmakeMove.
      *
      * @param mark The mark to be placed on the board.
      * @param row  The row index of the cell.
@@ -55,16 +148,193 @@ public class Board {
      * @return True if the mark was successfully placed, false otherwise.
      */
     public boolean putMark(Mark mark, int row, int col) {
-        Mark blankMark = Mark.BLANK;
-        if (checkCoordinates(row, col)) {
-            if (blankMark == getMark(row, col)) {
-                board[row][col] = mark;
-                return true;
+        return makeMove(mark, row, col);
+    }
+
+    /**
+     * Makes a move, putting a mark on the board and pushing it on the undo stack.
+     * A move never allocates, and the hash of the board is updated in constant time.
+     *
+     * @param mark The mark to be placed on the board.
+     * @param row  The row index of the cell.
+     * @param col  The column index of the cell.
+     * @return True if the mark was successfully placed, false otherwise.
+     */
+    public boolean makeMove(Mark mark, int row, int col) {
+        if (!checkCoordinates(row, col) || isOccupied(row, col)) {
+            return false;
+        }
+        if (mark == Mark.BLANK) {
+            return true;
+        }
+        int cell = row * boardSize + col;
+        toggleMark(mark, row, col);
+        removeBlankCell(cell);
+        moves[moveCount++] = cell;
+        updateHashes(mark, row, col);
+        return true;
+    }
+
+    /**
+     * Takes back the last move made on the board, restoring the board, its index of blank
+     * cells and its hash to their state before the move.
+     *
+     * @return True if a move was taken back, false if the board is empty.
+     */
+    public boolean unmakeMove() {
+        if (moveCount == 0) {
+            return false;
+        }
+        int cell = moves[--moveCount];
+        int row = cell / boardSize;
+        int col = cell % boardSize;
+        Mark mark = getMark(row, col);
+        toggleMark(mark, row, col);
+        blankCount++;
+        updateHashes(mark, row, col);
+        return true;
+    }
+
+    /**
+     * Retrieves the Zobrist hash of the position, the XOR of Zobrist.key of every marked cell.
+     *
+     * @return The 64-bit hash of the marks on the board.
+     */
+    public long getHash() {
+        return symmetryHashes[IDENTITY];
+    }
+
+    /**
+     * Retrieves the canonical hash of the position: the smallest hash among its 8 rotations and
+     * reflections. Symmetric positions share the same canonical hash.
+     *
+     * @return The 64-bit canonical hash of the marks on the board.
+     */
+    public long getCanonicalHash() {
+        return getSymmetryHash(getCanonicalSymmetry());
+    }
+
+    /**
+     * Retrieves the hash of the position transformed by one of its symmetries. Only valid for a
+     * symmetry other than the identity once getCanonicalSymmetry has been called on the board.
+     *
+     * @param symmetry The index of the symmetry, between 0 and SYMMETRIES - 1.
+     * @return The 64-bit hash of the transformed position.
+     */
+    public long getSymmetryHash(int symmetry) {
+        return symmetryHashes[symmetry];
+    }
+
+    /**
+     * Retrieves the symmetry that maps the position onto its canonical form. A cell of this board
+     * is found at transformCell(getCanonicalSymmetry(), cell, size) in the canonical form.
+     *
+     * @return The index of the symmetry, between 0 and SYMMETRIES - 1.
+     */
+    public int getCanonicalSymmetry() {
+        if (!trackingSymmetries) {
+            trackingSymmetries = true;
+            for (int symmetry = IDENTITY + 1; symmetry < SYMMETRIES; symmetry++) {
+                symmetryHashes[symmetry] = 0;
+            }
+            for (int i = 0; i < moveCount; i++) {
+                int row = moves[i] / boardSize;
+                int col = moves[i] % boardSize;
+                updateSymmetryHashes(getMark(row, col), moves[i]);
             }
+        }
+        int canonical = IDENTITY;
+        for (int symmetry = IDENTITY + 1; symmetry < SYMMETRIES; symmetry++) {
+            if (symmetryHashes[symmetry] < symmetryHashes[canonical]) {
+                canonical = symmetry;
+            }
+        }
+        return canonical;
+    }
+
+    /**
+     * Maps a cell through a symmetry of the board.
+     *
+     * @param symmetry The index of the symmetry, between 0 and SYMMETRIES - 1.
+     * @param cell     The cell as row * size + col.
+     * @param size     The size of the square board.
+     * @return The transformed cell as row * size + col.
+     */
+    public static int transformCell(int symmetry, int cell, int size) {
+        int row = cell / size;
+        int col = cell % size;
+        int last = size - 1;
+        return switch (symmetry) {
+            case ROTATE_90 -> col * size + last - row;
+            case ROTATE_180 -> (last - row) * size + last - col;
+            case ROTATE_270 -> (last - col) * size + row;
+            case MIRROR_COLUMNS -> row * size + last - col;
+            case MIRROR_ROWS -> (last - row) * size + col;
+            case TRANSPOSE -> col * size + row;
+            case ANTI_TRANSPOSE -> (last - col) * size + last - row;
+            default -> cell;
+        };
+    }
 
+    /**
+     * Retrieves the symmetry that undoes another one.
+     *
+     * @param symmetry The index of the symmetry, between 0 and SYMMETRIES - 1.
+     * @return The index of the inverse symmetry.
+     */
+    public static int inverseSymmetry(int symmetry) {
+        if (symmetry == ROTATE_90) {
+            return ROTATE_270;
         }
-        return false;
+        if (symmetry == ROTATE_270) {
+            return ROTATE_90;
+        }
+        return symmetry;
+    }
 
+    /**
+     * Retrieves the number of moves on the undo stack.
+     *
+     * @return The number of marks placed on the board.
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Retrieves a move from the undo stack.
+     *
+     * @param index The index of the move, 0 for the first move of the game.
+     * @return The marked cell as row * size + col.
+     */
+    public int getMove(int index) {
+        return moves[index];
+    }
+
+    /**
+     * Checks whether the mark on a cell is part of a streak of winStreak marks. Only the four
+     * lines through the cell are scanned, stopping after winStreak cells in each direction.
+     *
+     * @param row The row index of the cell.
+     * @param col The column index of the cell.
+     * @return True if the mark on the cell completes a winning streak, false otherwise.
+     */
+    public boolean completesStreak(int row, int col) {
+        Mark mark = getMark(row, col);
+        if (mark == Mark.BLANK) {
+            return false;
+        }
+        for (int[] direction : DIRECTIONS) {
+            int streak = 1;
+            streak += countStreakLength(mark, row, col, direction[0], direction[1],
+                    winStreak - streak);
+            streak += countStreakLength(mark, row, col, -direction[0], -direction[1],
+                    winStreak - streak);
+            if (streak >= winStreak) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -76,25 +346,235 @@ public class Board {
      */
 
     public Mark getMark(int row, int col) {
-        if (checkCoordinates(row, col)) {
-            return board[row][col];
+        if (!checkCoordinates(row, col)) {
+            return Mark.BLANK;
+        }
+        long xWord;
+        long oWord;
+        long bit;
+        if (xRows == null) {
+            xWord = xBits;
+            oWord = oBits;
+            bit = 1L << (row * boardSize + col);
+        } else {
+            int word = row * wordsPerRow + (col >>> WORD_SHIFT);
+            xWord = xRows[word];
+            oWord = oRows[word];
+            bit = 1L << (col & WORD_MASK);
+        }
+        if ((xWord & bit) != 0) {
+            return Mark.X;
+        }
+        if ((oWord & bit) != 0) {
+            return Mark.O;
         }
         return Mark.BLANK;
     }
 
 
     /**
-     * Initializes the board by filling all cells with a blank mark.
+     * Retrieves the number of blank cells left on the board.
+     *
+     * @return The number of blank cells.
+     */
+    public int getBlankCount() {
+        return blankCount;
+    }
+
+    /**
+     * Retrieves a blank cell by its position in the index of blank cells, so a uniformly random
+     * blank cell can be drawn in constant time. The order of the index changes whenever a mark
+     * is placed.
+     *
+     * @param index The position in the index, between 0 and getBlankCount() - 1.
+     * @return The blank cell as row * size + col.
+     */
+    public int getBlankCell(int index) {
+        return blankCells[index];
+    }
+
+    /**
+     * Retrieves the row of the last mark placed on the board.
+     *
+     * @return The row index of the last placed mark, or -1 if the board is still empty.
+     */
+    public int getLastRow() {
+        if (moveCount == 0) {
+            return NO_MOVE;
+        }
+        return moves[moveCount - 1] / boardSize;
+    }
+
+    /**
+     * Retrieves the column of the last mark placed on the board.
+     *
+     * @return The column index of the last placed mark, or -1 if the board is still empty.
+     */
+    public int getLastCol() {
+        if (moveCount == 0) {
+            return NO_MOVE;
+        }
+        return moves[moveCount - 1] % boardSize;
+    }
+
+
+    /**
+     * Clears the board for a new game, leaving every cell blank. The storage of the board is
+     * kept, so consecutive games can be played on the same board without allocating.
+     */
+    public void reset() {
+        initializeBoard();
+    }
+
+
+    /**
+     * Initializes the board by clearing both bitboards, leaving every cell blank.
      */
     private void initializeBoard() {
-        for (int i = 0; i < boardSize; i++) {
-            for (int j = 0; j < boardSize; j++) {
-                board[i][j] = Mark.BLANK;
+        moveCount = 0;
+        for (int symmetry = 0; symmetry < SYMMETRIES; symmetry++) {
+            symmetryHashes[symmetry] = 0;
+        }
+        blankCount = boardSize * boardSize;
+        for (int cell = 0; cell < blankCount; cell++) {
+            blankCells[cell] = cell;
+            blankPositions[cell] = cell;
+        }
+        xBits = 0;
+        oBits = 0;
+        if (xRows != null) {
+            for (int word = 0; word < xRows.length; word++) {
+                xRows[word] = 0;
+                oRows[word] = 0;
             }
         }
     }
 
 
+    /**
+     * Flips the bit of a mark on a cell, placing the mark on a blank cell or removing it.
+     *
+     * @param mark The mark to flip, X or O.
+     * @param row  The row index of the cell, assumed to be valid.
+     * @param col  The column index of the cell, assumed to be valid.
+     */
+
+    private void toggleMark(Mark mark, int row, int col) {
+        if (xRows == null) {
+            long bit = 1L << (row * boardSize + col);
+            if (mark == Mark.X) {
+                xBits ^= bit;
+            } else {
+                oBits ^= bit;
+            }
+        } else {
+            int word = row * wordsPerRow + (col >>> WORD_SHIFT);
+            long bit = 1L << (col & WORD_MASK);
+            if (mark == Mark.X) {
+                xRows[word] ^= bit;
+            } else {
+                oRows[word] ^= bit;
+            }
+        }
+    }
+
+
+    /**
+     * Folds a mark on a cell in or out of the hash of the position, and of its symmetries once
+     * they are tracked.
+     *
+     * @param mark The mark on the cell, X or O.
+     * @param row  The row index of the cell.
+     * @param col  The column index of the cell.
+     */
+
+    private void updateHashes(Mark mark, int row, int col) {
+        int cell = row * boardSize + col;
+        symmetryHashes[IDENTITY] ^= Zobrist.key(cell, mark.ordinal());
+        if (trackingSymmetries) {
+            updateSymmetryHashes(mark, cell);
+        }
+    }
+
+
+    /**
+     * Folds a mark on a cell in or out of the hashes of the rotations and reflections of the
+     * position.
+     *
+     * @param mark The mark on the cell, X or O.
+     * @param cell The cell as row * size + col.
+     */
+
+    private void updateSymmetryHashes(Mark mark, int cell) {
+        for (int symmetry = IDENTITY + 1; symmetry < SYMMETRIES; symmetry++) {
+            symmetryHashes[symmetry] ^= Zobrist.key(transformCell(symmetry, cell, boardSize),
+                    mark.ordinal());
+        }
+    }
+
+
+    /**
+     * Counts the marks following the specified cell in one direction, stopping at the first
+     * different mark, at the edge of the board or once the limit is reached.
+     *
+     * @param mark    The mark ('X' or 'O') to count.
+     * @param row     The row index of the starting cell, which is not counted.
+     * @param col     The column index of the starting cell, which is not counted.
+     * @param rowStep The row direction to advance in.
+     * @param colStep The column direction to advance in.
+     * @param limit   The maximal number of cells to count.
+     * @return The number of consecutive marks found.
+     */
+
+    private int countStreakLength(Mark mark, int row, int col, int rowStep, int colStep,
+                                  int limit) {
+        int count = 0;
+        int tempRow = row + rowStep;
+        int tempCol = col + colStep;
+        while (count < limit && getMark(tempRow, tempCol) == mark) {
+            count++;
+            tempRow += rowStep;
+            tempCol += colStep;
+        }
+        return count;
+    }
+
+
+    /**
+     * Removes a newly marked cell from the index of blank cells by moving the last blank cell
+     * of the index into its position. The marked cell is parked right after the blank cells,
+     * so unmakeMove restores the index by growing it back by one.
+     *
+     * @param cell The marked cell as row * size + col.
+     */
+
+    private void removeBlankCell(int cell) {
+        int position = blankPositions[cell];
+        int lastCell = blankCells[--blankCount];
+        blankCells[position] = lastCell;
+        blankPositions[lastCell] = position;
+        blankCells[blankCount] = cell;
+        blankPositions[cell] = blankCount;
+    }
+
+
+    /**
+     * Checks whether a cell inside the board already holds a mark.
+     *
+     * @param row The row index of the cell, assumed to be valid.
+     * @param col The column index of the cell, assumed to be valid.
+     * @return True if the cell is marked by either player, false otherwise.
+     */
+
+    private boolean isOccupied(int row, int col) {
+        if (xRows == null) {
+            return ((xBits | oBits) & (1L << (row * boardSize + col))) != 0;
+        }
+        int word = row * wordsPerRow + (col >>> WORD_SHIFT);
+        return ((xRows[word] | oRows[word]) & (1L << (col & WORD_MASK))) != 0;
+    }
+
+
     /**
      * Checks whether the specified coordinates are valid within the board.
      *
@@ -10,6 +10,8 @@ import java.util.Random;
 public class CleverPlayer implements Player {
 
 
+    private final Random random = new Random();
+
     private Mark currentMark = null;
 
     private int lastRowMarked;
@@ -41,16 +43,10 @@ public class CleverPlayer implements Player {
 
     private void markRandomEmptyCell(Board board, Mark mark) {
         int boardSize = board.getSize();
-        while (true) {
-            Random random = new Random();
-            int row = random.nextInt(boardSize);
-            int col = random.nextInt(boardSize);
-            if (board.putMark(mark, row, col)) {
-                lastRowMarked = row;
-                lastColMarked = col;
-                break;
-            }
-        }
+        int cell = board.getBlankCell(random.nextInt(board.getBlankCount()));
+        lastRowMarked = cell / boardSize;
+        lastColMarked = cell % boardSize;
+        board.putMark(mark, lastRowMarked, lastColMarked);
     }
 
 
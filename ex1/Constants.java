@@ -1,11 +1,48 @@
 public class Constants {
     public final static String UNKNOWN_PLAYER_NAME = "Choose a player, " +
-            "and start again.\nThe players: [human, clever, whatever, genius]";
+            "and start again.\nThe players: [human, clever, whatever, genius, search, mcts," +
+            " perfect, ntuple, proof]";
 
     public final static String
             UNKNOWN_RENDERER_NAME = "Choose a renderer, and start again. \nPlease " +
             "choose one of the following [console, none]";
 
+    public final static String UNKNOWN_OPTION = "Choose valid options, and start again.\n" +
+            "Options are given as name=value, e.g. workers=8 depth=4 nodes=200000 movetime=50" +
+            " threads=4 stats=csv out=results.csv interval=100000 sprt=0:10 alpha=0.05 beta=0.05" +
+            " record=games.log tablebase=tables profile=16 jfr=true movelimit=100 clock=5000" +
+            " overrun=forfeit ponder=true seed=1 sample=0.25 opening=2 rate=0.1 lambda=0.5" +
+            " epsilon=0.1 networks=nets proofnodes=100000 memory=16" +
+            " searchthreads=4";
+
+    public final static String UNWRITABLE_OUTPUT = "An output file cannot be opened, " +
+            "choose another path and start again.";
+
+    public final static String UNKNOWN_DAEMON_OPTION = "Choose valid daemon options, " +
+            "and start again.\nOptions are given as name=value, e.g. port=7070 jobs=4";
+
+    public final static String DAEMON_JOB_USAGE = "A job needs the tournament arguments: " +
+            "rounds size streak renderer player1 player2 [name=value options]";
+
+    public final static String DAEMON_INTERACTIVE_JOB = "A job cannot use the console, " +
+            "choose the none renderer, computer players, and an out= file for stats";
+
+    public final static String INVALID_ANALYSIS_MOVE = "Invalid move, choose an empty cell " +
+            "on the board and start again: ";
+
+    public final static String FINISHED_ANALYSIS_POSITION = "The game is already won, " +
+            "choose a position before its winning move and start again: ";
+
+    public final static String PROOF_SIDE_TO_MOVE = " to move: ";
+
+    public final static String PROOF_WIN = "wins by threats";
+
+    public final static String PROOF_NO_WIN = "no win by threats";
+
+    public final static String PROOF_UNKNOWN = "unknown, budget spent";
+
+    public final static String PROOF_WINNING_MOVE = "Winning move: ";
+
     public final static String INVALID_COORDINATE = "Invalid mark position, " +
             "please choose a different position.\n" +
             "Invalid coordinates, type again: ";
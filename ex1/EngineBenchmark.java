@@ -0,0 +1,245 @@
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/**
+ * The EngineBenchmark class measures the throughput and the allocations of the engine over a
+ * matrix of board sizes and win streaks: Board.putMark, Board.getMark, the playTurn of every
+ * computer player, and full games of every pairing of computer players under a VoidRenderer.
+ * Every benchmark is warmed up before it is measured, and its results are folded into a checksum
+ * so the JIT compiler cannot drop the measured work.
+ * It takes the same name=value engine options as the Tournament, e.g. "movetime=5 depth=3".
+ * Allocations are those of the benchmark thread, so the helper threads of a multithreaded
+ * engine player are not included.
+ */
+
+public class EngineBenchmark {
+
+    private static final int[][] BOARDS = {{3, 3}, {4, 3}, {5, 4}, {8, 5}, {12, 5}};
+
+    private static final long WARMUP_NANOS = 500_000_000L;
+
+    private static final long MEASURE_NANOS = 1_000_000_000L;
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private static final String HEADER_FORMAT = "%-26s %5s %7s %14s %14s %14s%n";
+
+    private static final String ROW_FORMAT = "%-26s %5d %7d %14.1f %14.1f %14.1f%n";
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final PlayerFactory playerFactory;
+
+    private long checksum;
+
+    /**
+     * The Operation interface is a single measured operation of a benchmark.
+     */
+
+    private interface Operation {
+
+        /**
+         * Runs the operation once.
+         *
+         * @return The number of moves the operation made, or of cells it read.
+         */
+        int run();
+    }
+
+    /**
+     * Constructs an EngineBenchmark building its players with the given engine settings.
+     *
+     * @param options The options holding the engine settings.
+     */
+    public EngineBenchmark(TournamentOptions options) {
+        this.playerFactory = new PlayerFactory(options);
+    }
+
+    /**
+     * Runs every benchmark on every board of the matrix and prints a row per benchmark.
+     */
+
+    public void runAll() {
+        System.out.printf(Locale.ROOT, HEADER_FORMAT, "benchmark", "size", "streak", "ops/s",
+                "moves/s", "bytes/op");
+        String[] types = playerFactory.getComputerPlayerTypes();
+        for (int[] board : BOARDS) {
+            int size = board[0];
+            int winStreak = board[1];
+            measure("putMark", size, winStreak, putMarkOperation(size, winStreak));
+            measure("getMark", size, winStreak, getMarkOperation(size, winStreak));
+            for (String type : types) {
+                measure("playTurn " + type, size, winStreak,
+                        playTurnOperation(playerFactory.buildPlayer(type), size, winStreak));
+            }
+            for (String typeX : types) {
+                for (String typeO : types) {
+                    measure("game " + typeX + "-" + typeO, size, winStreak,
+                            gameOperation(playerFactory.buildPlayer(typeX),
+                                    playerFactory.buildPlayer(typeO), size, winStreak));
+                }
+            }
+        }
+        System.out.println("checksum " + checksum);
+    }
+
+    /**
+     * Warms an operation up, then runs it for the measurement time, at least once, and prints
+     * its throughput and its allocations per operation.
+     *
+     * @param name      The name of the benchmark.
+     * @param size      The size of the board.
+     * @param winStreak The streak length required for a win.
+     * @param operation The measured operation.
+     */
+
+    private void measure(String name, int size, int winStreak, Operation operation) {
+        repeat(operation, WARMUP_NANOS);
+        long thread = Thread.currentThread().getId();
+        long bytesBefore = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        long[] counts = repeat(operation, MEASURE_NANOS);
+        long elapsed = System.nanoTime() - start;
+        long bytes = threads.getThreadAllocatedBytes(thread) - bytesBefore;
+        long operations = counts[0];
+        System.out.printf(Locale.ROOT, ROW_FORMAT, name, size, winStreak,
+                operations * NANOS_PER_SECOND / elapsed, counts[1] * NANOS_PER_SECOND / elapsed,
+                (double) bytes / operations);
+    }
+
+    /**
+     * Runs an operation repeatedly for a given time, at least once.
+     *
+     * @param operation The operation to run.
+     * @param nanos     The time to run it for, in nanoseconds.
+     * @return The number of runs and the total number of moves they made.
+     */
+
+    private long[] repeat(Operation operation, long nanos) {
+        long deadline = System.nanoTime() + nanos;
+        long operations = 0;
+        long moves = 0;
+        do {
+            moves += operation.run();
+            operations++;
+        } while (System.nanoTime() < deadline);
+        checksum += moves;
+        return new long[]{operations, moves};
+    }
+
+    /**
+     * Creates an operation filling a board with putMark, row by row, and taking the marks back.
+     *
+     * @param size      The size of the board.
+     * @param winStreak The streak length required for a win.
+     * @return The operation.
+     */
+
+    private static Operation putMarkOperation(int size, int winStreak) {
+        Board board = new Board(size, winStreak);
+        return () -> {
+            Mark mark = Mark.X;
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    board.putMark(mark, row, col);
+                    mark = mark == Mark.X ? Mark.O : Mark.X;
+                }
+            }
+            for (int cell = 0; cell < size * size; cell++) {
+                board.unmakeMove();
+            }
+            return size * size;
+        };
+    }
+
+    /**
+     * Creates an operation reading every cell of a half-filled board with getMark.
+     *
+     * @param size      The size of the board.
+     * @param winStreak The streak length required for a win.
+     * @return The operation.
+     */
+
+    private Operation getMarkOperation(int size, int winStreak) {
+        Board board = new Board(size, winStreak);
+        for (int cell = 0; cell < size * size; cell += 2) {
+            board.putMark(cell % 4 == 0 ? Mark.X : Mark.O, cell / size, cell % size);
+        }
+        return () -> {
+            int marks = 0;
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    if (board.getMark(row, col) != Mark.BLANK) {
+                        marks++;
+                    }
+                }
+            }
+            checksum += marks;
+            return size * size;
+        };
+    }
+
+    /**
+     * Creates an operation letting a player play both sides of a game through playTurn, until a
+     * win or a full board, and taking the moves back.
+     *
+     * @param player    The player to measure.
+     * @param size      The size of the board.
+     * @param winStreak The streak length required for a win.
+     * @return The operation.
+     */
+
+    private static Operation playTurnOperation(Player player, int size, int winStreak) {
+        Board board = new Board(size, winStreak);
+        return () -> {
+            Mark mark = Mark.X;
+            do {
+                player.playTurn(board, mark);
+                mark = mark == Mark.X ? Mark.O : Mark.X;
+            } while (!board.completesStreak(board.getLastRow(), board.getLastCol())
+                    && board.getBlankCount() > 0);
+            int moves = board.getMoveCount();
+            for (int move = 0; move < moves; move++) {
+                board.unmakeMove();
+            }
+            return moves;
+        };
+    }
+
+    /**
+     * Creates an operation playing a full game between two players with Game.run. The game is
+     * reset and run again on every call, as the tournament workers do.
+     *
+     * @param playerX   The player playing X.
+     * @param playerO   The player playing O.
+     * @param size      The size of the board.
+     * @param winStreak The streak length required for a win.
+     * @return The operation.
+     */
+
+    private static Operation gameOperation(Player playerX, Player playerO, int size,
+                                           int winStreak) {
+        Game game = new Game(playerX, playerO, size, winStreak, new VoidRenderer());
+        return () -> {
+            game.reset();
+            game.run();
+            return game.getMoveCount();
+        };
+    }
+
+    /**
+     * Runs the benchmarks. The arguments are optional name=value engine options.
+     *
+     * @param args Command-line arguments.
+     */
+
+    public static void main(String[] args) {
+        TournamentOptions options = TournamentOptions.parse(args, 0);
+        if (options == null) {
+            System.out.println(Constants.UNKNOWN_OPTION);
+            return;
+        }
+        new EngineBenchmark(options).runAll();
+    }
+}
@@ -1,3 +1,5 @@
+import java.util.concurrent.ThreadLocalRandom;
+
 
 /**
  * The Game class represents a Tic Tac Toe game, managing the players, board, and game flow.
@@ -12,13 +14,11 @@ public class Game {
     private final Renderer renderer;
     private final Board board;
     private final int winStreak;
-
-    private int CurrentStreak;
-
-    private int blankCells;
-
-    private boolean winner = false;
-
+    private final WinnableLines winnableLines;
+    private final TimeControl timeControl;
+    private long clockX;
+    private long clockO;
+    private boolean forfeited;
 
     /**
      * Constructs a Tic Tac Toe game with default settings.
@@ -33,8 +33,9 @@ public class Game {
         this.playerO = playerO;
         this.renderer = renderer;
         this.board = new Board();
-        this.winStreak = board.getSize() - 1;
-        this.blankCells = this.getBoardSize() * this.getBoardSize();
+        this.winStreak = board.getWinStreak();
+        this.winnableLines = new WinnableLines(board.getSize(), winStreak);
+        this.timeControl = null;
 
     }
 
@@ -51,12 +52,84 @@ public class Game {
     public Game(Player playerX, Player
             playerO, int size, int
                         winStreak, Renderer renderer) {
+        this(playerX, playerO, size, winStreak, renderer, null);
+    }
+
+    /**
+     * Constructs a Tic Tac Toe game with custom settings and time limits.
+     *
+     * @param playerX     The player representing 'X'.
+     * @param playerO     The player representing 'O'.
+     * @param size        The size of the game board.
+     * @param winStreak   The streak length required for a win.
+     * @param renderer    The renderer for displaying the game board.
+     * @param timeControl The time limits of the players, or null if their turns are not timed.
+     */
+
+    public Game(Player playerX, Player playerO, int size, int winStreak, Renderer renderer,
+                TimeControl timeControl) {
+        this(playerX, playerO, new Board(size, checkStreakValidity(winStreak, size)), renderer,
+                timeControl);
+    }
+
+    /**
+     * Constructs a Tic Tac Toe game played on an existing board, which is cleared first. Several
+     * games may share a board as long as they are not played at the same time, so a worker can
+     * play many games with no allocation besides its games.
+     *
+     * @param playerX     The player representing 'X'.
+     * @param playerO     The player representing 'O'.
+     * @param board       The board to play on, whose size and streak length the game uses.
+     * @param renderer    The renderer for displaying the game board.
+     * @param timeControl The time limits of the players, or null if their turns are not timed.
+     */
+
+    public Game(Player playerX, Player playerO, Board board, Renderer renderer,
+                TimeControl timeControl) {
         this.playerX = playerX;
         this.playerO = playerO;
         this.renderer = renderer;
-        this.board = new Board(size);
-        this.winStreak = checkStreakValidity(winStreak, size);
-        this.blankCells = this.getBoardSize() * this.getBoardSize();
+        this.board = board;
+        this.winStreak = board.getWinStreak();
+        this.winnableLines = new WinnableLines(board.getSize(), winStreak);
+        this.timeControl = timeControl;
+        reset();
+    }
+
+    /**
+     * Constructs the return game of another game: the same players with their marks swapped,
+     * played on the same board with the same renderer and time limits. The two games share
+     * their board, so they must not be run at the same time.
+     *
+     * @param game The game whose players swap their marks.
+     */
+
+    public Game(Game game) {
+        this(game.playerO, game.playerX, game.board, game.renderer, game.timeControl);
+    }
+
+    /**
+     * Clears the board, the open lines and the clocks, so the game can be run again.
+     */
+
+    public void reset() {
+        board.reset();
+        winnableLines.reset();
+        if (timeControl != null) {
+            clockX = timeControl.getGameNanos();
+            clockO = timeControl.getGameNanos();
+        }
+    }
+
+    /**
+     * Checks whether the last run of the game ended because a player overran its time and
+     * forfeited, rather than on the board.
+     *
+     * @return True if the game was lost by forfeit.
+     */
+
+    public boolean isForfeited() {
+        return forfeited;
     }
 
     /**
@@ -81,175 +154,171 @@ public class Game {
 
 
     /**
-     * Runs the Tic Tac Toe game until a winner is determined or the game ends in a draw.
+     * Retrieves the number of moves played so far.
      *
-     * @return The mark of the winner ('X' or 'O') or 'BLANK' in case of a draw.
+     * @return The number of marks on the game board.
      */
-
-
-    public Mark run() {
-        while (true) {
-            playerX.playTurn(this.board, Mark.X);
-            this.renderer.renderBoard(board);
-            blankCells--;
-            checkAllLinesStreak(Mark.X);
-
-            if (endGameCheck(Mark.X) != null) {
-                return endGameCheck(Mark.X);
-            }
-
-            playerO.playTurn(this.board, Mark.O);
-            this.renderer.renderBoard(board);
-            blankCells--;
-            checkAllLinesStreak(Mark.O);
-
-            if (endGameCheck(Mark.O) != null) {
-                return endGameCheck(Mark.O);
-            }
-        }
+    public int getMoveCount() {
+        return board.getMoveCount();
     }
 
 
     /**
-     * Checks the validity of the streak length and adjusts it if necessary.
+     * Retrieves a move played so far.
      *
-     * @param winStreak The streak length required for a win.
-     * @param size      The size of the game board.
-     * @return The adjusted streak length.
+     * @param index The index of the move, 0 for the first move.
+     * @return The cell index (row * size + col) of the move.
      */
-    private int checkStreakValidity(int winStreak, int size) {
-        if (winStreak < 2 || winStreak > size) {
-            return size;
-        }
-        return winStreak;
+    public int getMove(int index) {
+        return board.getMove(index);
     }
 
+
     /**
-     * Checks for a winning streak in all directions on the game board.
+     * Runs the Tic Tac Toe game until a winner is determined or the game ends in a draw.
      *
-     * @param mark The mark ('X' or 'O') to check for a streak.
+     * @return The mark of the winner ('X' or 'O') or 'BLANK' in case of a draw.
      */
 
-    private void checkAllLinesStreak(Mark mark) {
 
-        checkStraightStreak(board, mark, true);
-        checkStraightStreak(board, mark, false);
-        checkLeftDiagonalStreak(board, mark);
-        checkRightDiagonalStreak(board, mark);
+    public Mark run() {
+        forfeited = false;
+        try {
+            while (true) {
+                Mark result = playTurn(playerX, Mark.X);
+                if (result != null) {
+                    return result;
+                }
 
+                result = playTurn(playerO, Mark.O);
+                if (result != null) {
+                    return result;
+                }
+            }
+        } finally {
+            playerX.stopPondering();
+            playerO.stopPondering();
+        }
     }
 
+
     /**
-     * Checks for a winning streak in straight lines (rows or columns) on the game board.
+     * Lets a player make its move, renders the board and checks whether the game has ended.
+     * A player stops pondering before its move, and may start again after it while the game
+     * goes on.
      *
-     * @param board         The game board.
-     * @param mark          The mark ('X' or 'O') to check for a streak.
-     * @param lineDirection True for rows, false for columns.
+     * @param player The player whose turn it is.
+     * @param mark   The mark ('X' or 'O') the player plays with.
+     * @return The mark of the winner, 'BLANK' in case of a draw, or null if the game goes on.
      */
 
-    private void checkStraightStreak(Board board, Mark mark, boolean lineDirection) {
-        for (int row = 0; row < board.getSize(); row++) {
-            CurrentStreak = 0;
-            for (int col = 0; col < board.getSize(); col++) {
-                if (lineDirection) {
-                    checkStreakLength(board, mark, row, col);
-                } else {
-                    checkStreakLength(board, mark, col, row);
-                }
-            }
+    private Mark playTurn(Player player, Mark mark) {
+        player.stopPondering();
+        if (timeControl == null) {
+            player.playTurn(this.board, mark);
+        } else if (!playTimedTurn(player, mark)) {
+            forfeited = true;
+            return mark == Mark.X ? Mark.O : Mark.X;
+        }
+        this.renderer.renderBoard(board);
+        Mark result = endGameCheck(mark);
+        if (result == null) {
+            player.startPondering(this.board, mark);
         }
+        return result;
     }
 
+
     /**
-     * Checks for a winning streak in the left diagonal direction on the game board.
+     * Lets a player make its move within its time budget, which is the move limit or the time
+     * left on its clock, whichever is shorter. The turn runs on the calling thread and is only
+     * measured, so a player that never returns cannot be stopped; players are expected to watch
+     * the deadline they are given. A player that overruns its budget either forfeits the game or
+     * has its move replaced by a fallback move.
      *
-     * @param board The game board.
-     * @param mark  The mark ('X' or 'O') to check for a streak.
+     * @param player The player whose turn it is.
+     * @param mark   The mark ('X' or 'O') the player plays with.
+     * @return True if the game goes on, false if the player forfeits it.
      */
 
-    private void checkLeftDiagonalStreak(Board board, Mark mark) {
-        int startingCol;
-        int boardLimit = board.getSize() - 1;
-        for (int row = 0; row <= boardLimit; row++) {
-            if (row == 0) {
-                startingCol = 0;
-            } else {
-                startingCol = boardLimit;
-            }
-            for (int col = startingCol; col <= boardLimit; col++) {
-                int tempRow = row;
-                int tempCol = col;
-                this.CurrentStreak = 0;
-                while (tempRow <= boardLimit && tempCol >= 0) {
-                    checkStreakLength(board, mark, tempRow, tempCol);
-                    tempRow++;
-                    tempCol--;
-                }
-            }
+    private boolean playTimedTurn(Player player, Mark mark) {
+        long budget = timeControl.getMoveBudget(mark == Mark.X ? clockX : clockO);
+        int movesBefore = board.getMoveCount();
+        long start = System.nanoTime();
+        long deadline = budget > Long.MAX_VALUE - start ? Long.MAX_VALUE : start + budget;
+        player.playTurn(this.board, mark, deadline);
+        long elapsed = System.nanoTime() - start;
+        if (mark == Mark.X) {
+            clockX -= elapsed;
+        } else {
+            clockO -= elapsed;
+        }
+        if (elapsed <= budget) {
+            return true;
         }
+        if (timeControl.getOverrunPolicy() == TimeControl.FORFEIT) {
+            return false;
+        }
+        if (board.getMoveCount() > movesBefore) {
+            board.unmakeMove();
+        }
+        int cell = fallbackCell(timeControl.getOverrunPolicy());
+        board.putMark(mark, cell / board.getSize(), cell % board.getSize());
+        return true;
     }
 
+
     /**
-     * Checks for a winning streak in the right diagonal direction on the game board.
+     * Picks the move that replaces the move of a player who overran its time.
      *
-     * @param board The game board.
-     * @param mark  The mark ('X' or 'O') to check for a streak.
+     * @param overrunPolicy TimeControl.FIRST_BLANK or TimeControl.RANDOM_BLANK.
+     * @return The cell index (row * size + col) of a blank cell.
      */
 
-    private void checkRightDiagonalStreak(Board board, Mark mark) {
-        int startingCol;
-        int boardLimit = board.getSize() - 1;
-        for (int row = 0; row <= boardLimit; row++) {
-            if (row == 0) {
-                startingCol = boardLimit;
-            } else {
-                startingCol = 0;
-            }
-            for (int col = startingCol; col >= 0; col--) {
-                int tempRow = row;
-                int tempCol = col;
-                this.CurrentStreak = 0;
-                while (tempRow <= boardLimit && tempCol <= boardLimit) {
-                    checkStreakLength(board, mark, tempRow, tempCol);
-                    tempRow++;
-                    tempCol++;
-                }
-            }
+    private int fallbackCell(int overrunPolicy) {
+        if (overrunPolicy == TimeControl.RANDOM_BLANK) {
+            return board.getBlankCell(ThreadLocalRandom.current().nextInt(board.getBlankCount()));
         }
+        int size = board.getSize();
+        int cell = 0;
+        while (board.getMark(cell / size, cell % size) != Mark.BLANK) {
+            cell++;
+        }
+        return cell;
     }
 
 
     /**
-     * Checks the length of the streak in a specified direction on the game board.
-     * change the flag of the winner if necessary, or change CurrentStrike value.
-     * @param board The game board.
-     * @param mark  The mark ('X' or 'O') to check for a streak.
-     * @param row   The row index of the cell.
-     * @param col   The column index of the cell.
+     * Checks the validity of the streak length and adjusts it if necessary.
+     *
+     * @param winStreak The streak length required for a win.
+     * @param size      The size of the game board.
+     * @return The adjusted streak length.
      */
-
-    private void checkStreakLength(Board board, Mark mark, int row, int col) {
-        if (mark == board.getMark(row, col)) {
-            CurrentStreak++;
-            if (CurrentStreak == this.winStreak) {
-                this.winner = true;
-            }
-        } else {
-            CurrentStreak = 0;
+    private static int checkStreakValidity(int winStreak, int size) {
+        if (winStreak < 2 || winStreak > size) {
+            return size;
         }
+        return winStreak;
     }
 
     /**
-     * Checks for a winner or a draw after player turn.
+     * Checks for a winner or a draw after player turn. The game is a draw once the board is full,
+     * or as soon as no row, column or diagonal window can still be completed by either player.
      *
      * @param mark The mark ('X' or 'O') to check for a winner.
      * @return The mark of the winner ('X' or 'O') or 'BLANK' in case of a draw.
      */
 
     private Mark endGameCheck(Mark mark) {
-        if (this.winner) {
+        int lastRow = board.getLastRow();
+        int lastCol = board.getLastCol();
+        if (lastRow >= 0) {
+            winnableLines.addMark(board.getMark(lastRow, lastCol), lastRow, lastCol);
+        }
+        if (board.completesStreak(lastRow, lastCol)) {
             return mark;
-        } else if (blankCells == 0) {
+        } else if (board.getBlankCount() == 0 || !winnableLines.hasOpenWindow()) {
             return Mark.BLANK;
         }
         return null;
@@ -0,0 +1,295 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * The GameLog class reads a game log written by the GameRecorder. It memory-maps the file and
+ * iterates over the games with a cursor: next moves to the following game, the getters describe
+ * the current game, and its moves are decoded on demand into a caller's array or straight onto a
+ * Board. No object is created per game, so a log of millions of games is scanned at the speed of
+ * varint decoding.
+ * Logs up to 2GB can be mapped.
+ */
+
+public class GameLog {
+
+    private static final int HEADER_BYTES = Integer.BYTES + 1;
+
+    private static final byte FIRST_VERSION = 1;
+
+    private static final int BYTE_MASK = 0xFF;
+
+    private static final int TRUNCATED = -1;
+
+    private static final int VARINT_PAYLOAD_BITS = 7;
+
+    private static final int VARINT_PAYLOAD_MASK = 0x7F;
+
+    private static final int VARINT_CONTINUE = 0x80;
+
+    private static final Mark[] MARKS = Mark.values();
+
+    private final MappedByteBuffer buffer;
+
+    private int nextGame = HEADER_BYTES;
+
+    private int size;
+
+    private int winStreak;
+
+    private Mark winner;
+
+    private boolean forfeited;
+
+    private int moveCount;
+
+    private int firstMove;
+
+    /**
+     * Opens a game log.
+     *
+     * @param path The path of the log file.
+     * @throws IOException If the file cannot be read, is too large or is not a game log.
+     */
+    public GameLog(String path) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Game log too large to map: " + path);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != GameRecorder.MAGIC
+                || buffer.get(Integer.BYTES) < FIRST_VERSION
+                || buffer.get(Integer.BYTES) > GameRecorder.VERSION) {
+            throw new IOException("Not a game log: " + path);
+        }
+    }
+
+    /**
+     * Moves the cursor to the next game of the log. A game cut short at the end of the file, as
+     * left by a run that was killed between two writes of the recorder, ends the log.
+     *
+     * @return True if there is another complete game, false at the end of the log.
+     */
+
+    public boolean next() {
+        if (nextGame >= buffer.limit()) {
+            return false;
+        }
+        buffer.position(nextGame);
+        int gameSize = getVarint();
+        int gameWinStreak = getVarint();
+        if (gameWinStreak == TRUNCATED || !buffer.hasRemaining()) {
+            return endTruncated();
+        }
+        int winnerByte = buffer.get() & BYTE_MASK;
+        int gameMoveCount = getVarint();
+        if (gameMoveCount == TRUNCATED) {
+            return endTruncated();
+        }
+        int gameFirstMove = buffer.position();
+        for (int move = 0; move < gameMoveCount; move++) {
+            if (!skipVarint()) {
+                return endTruncated();
+            }
+        }
+        size = gameSize;
+        winStreak = gameWinStreak;
+        winner = MARKS[winnerByte & ~GameRecorder.FORFEIT_FLAG];
+        forfeited = (winnerByte & GameRecorder.FORFEIT_FLAG) != 0;
+        moveCount = gameMoveCount;
+        firstMove = gameFirstMove;
+        nextGame = buffer.position();
+        return true;
+    }
+
+    /**
+     * Ends the log at a game that was cut short.
+     *
+     * @return False, as there is no next game.
+     */
+
+    private boolean endTruncated() {
+        nextGame = buffer.limit();
+        return false;
+    }
+
+    /**
+     * Moves the cursor back before the first game.
+     */
+
+    public void rewind() {
+        nextGame = HEADER_BYTES;
+    }
+
+    /**
+     * Retrieves the board size of the current game.
+     *
+     * @return The size of the board.
+     */
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Retrieves the win streak of the current game.
+     *
+     * @return The streak length required for a win.
+     */
+
+    public int getWinStreak() {
+        return winStreak;
+    }
+
+    /**
+     * Retrieves the winner of the current game.
+     *
+     * @return The mark of the winner ('X' or 'O') or 'BLANK' in case of a draw.
+     */
+
+    public Mark getWinner() {
+        return winner;
+    }
+
+    /**
+     * Checks whether the current game was lost by forfeit on time rather than on the board.
+     *
+     * @return True if the loser forfeited, always false in a version 1 log.
+     */
+
+    public boolean isForfeited() {
+        return forfeited;
+    }
+
+    /**
+     * Retrieves the number of moves of the current game.
+     *
+     * @return The number of moves.
+     */
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Decodes the moves of the current game.
+     *
+     * @param moves The array receiving the cell indices of the moves, at least getMoveCount long.
+     * @return The number of moves.
+     */
+
+    public int readMoves(int[] moves) {
+        buffer.position(firstMove);
+        for (int move = 0; move < moveCount; move++) {
+            moves[move] = getVarint();
+        }
+        return moveCount;
+    }
+
+    /**
+     * Replays the current game on a board, X moving first. The board must be empty and of the
+     * size and win streak of the game.
+     *
+     * @param board The board to play the moves on.
+     */
+
+    public void replay(Board board) {
+        buffer.position(firstMove);
+        Mark mark = Mark.X;
+        for (int move = 0; move < moveCount; move++) {
+            int cell = getVarint();
+            board.putMark(mark, cell / size, cell % size);
+            mark = mark == Mark.X ? Mark.O : Mark.X;
+        }
+    }
+
+    /**
+     * Decodes a varint at the position of the buffer.
+     *
+     * @return The decoded number, or TRUNCATED if the buffer ends within the varint.
+     */
+
+    private int getVarint() {
+        int value = 0;
+        int shift = 0;
+        byte current;
+        do {
+            if (!buffer.hasRemaining()) {
+                return TRUNCATED;
+            }
+            current = buffer.get();
+            value |= (current & VARINT_PAYLOAD_MASK) << shift;
+            shift += VARINT_PAYLOAD_BITS;
+        } while ((current & VARINT_CONTINUE) != 0);
+        return value;
+    }
+
+    /**
+     * Moves the position of the buffer past a varint.
+     *
+     * @return True if the whole varint was skipped, false if the buffer ends within it.
+     */
+
+    private boolean skipVarint() {
+        while (buffer.hasRemaining()) {
+            if ((buffer.get() & VARINT_CONTINUE) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Summarizes a game log: the number of games, the wins of each mark, the ties and the
+     * average game length. Every game is replayed and checked to end the way it was recorded;
+     * games lost by forfeit end off the board, so they are counted apart and not checked.
+     *
+     * @param args Command-line arguments: the path of the log file.
+     * @throws IOException If the log cannot be read.
+     */
+
+    public static void main(String[] args) throws IOException {
+        GameLog log = new GameLog(args[0]);
+        long[] results = new long[MARKS.length];
+        long games = 0;
+        long moves = 0;
+        long mismatches = 0;
+        long forfeits = 0;
+        Board board = null;
+        while (log.next()) {
+            if (board == null || board.getSize() != log.getSize()
+                    || board.getWinStreak() != log.getWinStreak()) {
+                board = new Board(log.getSize(), log.getWinStreak());
+            }
+            log.replay(board);
+            Mark expected = Mark.BLANK;
+            if (board.getMoveCount() > 0
+                    && board.completesStreak(board.getLastRow(), board.getLastCol())) {
+                expected = board.getMark(board.getLastRow(), board.getLastCol());
+            }
+            if (log.isForfeited()) {
+                forfeits++;
+            } else if (expected != log.getWinner()) {
+                mismatches++;
+            }
+            while (board.getMoveCount() > 0) {
+                board.unmakeMove();
+            }
+            results[log.getWinner().ordinal()]++;
+            games++;
+            moves += log.getMoveCount();
+        }
+        System.out.println("Games: " + games);
+        System.out.println("X won: " + results[Mark.X.ordinal()]);
+        System.out.println("O won: " + results[Mark.O.ordinal()]);
+        System.out.println("Ties: " + results[Mark.BLANK.ordinal()]);
+        System.out.printf(Locale.ROOT, "Average moves: %.2f%n",
+                games == 0 ? 0 : (double) moves / games);
+        System.out.println("Forfeits: " + forfeits);
+        System.out.println("Replay mismatches: " + mismatches);
+    }
+}
@@ -0,0 +1,161 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The GameRecorder class appends the move sequences of finished games to a compact binary log,
+ * which the GameLog class reads back.
+ * The log starts with a magic number and a version byte. Every game follows as a header of the
+ * board size, the win streak, the winner's mark and the number of moves, and then the cell index
+ * of every move, X moving first. All the numbers except the winner are unsigned LEB128 varints,
+ * so a game on a board of up to 11x11 cells takes a byte per move. The winner byte has its
+ * FORFEIT_FLAG bit set when the game was lost by forfeit rather than on the board, which
+ * version 1 logs do not record.
+ * Games are encoded into a direct buffer that is written to the file channel when it fills up,
+ * and the recorder may be shared by the workers of a parallel tournament.
+ */
+
+public class GameRecorder {
+
+    /**
+     * The magic number at the start of every log, "TTTL" in ASCII.
+     */
+    public static final int MAGIC = 0x5454544C;
+
+    /**
+     * The version of the log format.
+     */
+    public static final byte VERSION = 2;
+
+    /**
+     * The bit of the winner byte telling that the loser forfeited the game on time.
+     */
+    public static final int FORFEIT_FLAG = 0x80;
+
+    private static final int HEADER_BYTES = Integer.BYTES + 1;
+
+    private static final byte FIRST_VERSION = 1;
+
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    private static final int MAX_VARINT_BYTES = 5;
+
+    private static final int VARINT_PAYLOAD_BITS = 7;
+
+    private static final int VARINT_PAYLOAD_MASK = 0x7F;
+
+    private static final int VARINT_CONTINUE = 0x80;
+
+    private final FileChannel channel;
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+
+    /**
+     * Opens a recorder appending to a log file, creating the file and writing the log header if
+     * the file does not exist or is empty.
+     *
+     * @param path The path of the log file.
+     * @throws IOException If the file cannot be opened, or is neither empty nor a game log.
+     */
+    public GameRecorder(String path) throws IOException {
+        channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        if (size == 0) {
+            buffer.putInt(MAGIC);
+            buffer.put(VERSION);
+            return;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                break;
+            }
+        }
+        if (header.hasRemaining() || header.getInt(0) != MAGIC
+                || header.get(Integer.BYTES) < FIRST_VERSION
+                || header.get(Integer.BYTES) > VERSION) {
+            channel.close();
+            throw new IOException("Not a game log: " + path);
+        }
+        channel.position(size);
+    }
+
+    /**
+     * Appends a finished game to the log.
+     *
+     * @param game   The game, after it has been run.
+     * @param winner The mark of the winner ('X' or 'O') or 'BLANK' in case of a draw.
+     */
+
+    public synchronized void record(Game game, Mark winner) {
+        int moves = game.getMoveCount();
+        putVarint(game.getBoardSize());
+        putVarint(game.getWinStreak());
+        ensureRemaining(1);
+        buffer.put((byte) (winner.ordinal() | (game.isForfeited() ? FORFEIT_FLAG : 0)));
+        putVarint(moves);
+        for (int move = 0; move < moves; move++) {
+            putVarint(game.getMove(move));
+        }
+    }
+
+    /**
+     * Writes the buffered games and closes the log file.
+     */
+
+    public synchronized void close() {
+        flush();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Puts a non-negative number into the buffer as a varint.
+     *
+     * @param value The number.
+     */
+
+    private void putVarint(int value) {
+        ensureRemaining(MAX_VARINT_BYTES);
+        while ((value & ~VARINT_PAYLOAD_MASK) != 0) {
+            buffer.put((byte) ((value & VARINT_PAYLOAD_MASK) | VARINT_CONTINUE));
+            value >>>= VARINT_PAYLOAD_BITS;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Writes the buffer to the file when it has less room left than a given number of bytes.
+     *
+     * @param bytes The number of bytes about to be put into the buffer.
+     */
+
+    private void ensureRemaining(int bytes) {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the whole buffer to the file.
+     */
+
+    private void flush() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,172 @@
+import java.lang.management.ManagementFactory;
+
+/**
+ * The InstrumentedPlayer class wraps a Player and measures its turns. Every sampled turn is timed
+ * and its allocations are read from the thread's allocation counter, when the JVM exposes one;
+ * the other turns are only counted, so a sparse sampling interval keeps the overhead to a
+ * counter increment per turn. Each turn can also be emitted as a PlayerTurnEvent for JFR.
+ * Allocations made by helper threads of the wrapped player are not included.
+ */
+
+public class InstrumentedPlayer implements Player {
+
+    private static final com.sun.management.ThreadMXBean THREADS = allocationBean();
+
+    private final Player player;
+
+    private final String type;
+
+    private final int sampleInterval;
+
+    private final boolean emitEvents;
+
+    private final TurnHistogram histogram = new TurnHistogram();
+
+    private int untilSample = 0;
+
+    /**
+     * Constructs an InstrumentedPlayer.
+     *
+     * @param player         The player to measure.
+     * @param type           The player type string, used to group the measurements.
+     * @param sampleInterval The number of turns between two sampled turns, at least 1.
+     * @param emitEvents     True to emit a JFR event per turn, false otherwise.
+     */
+    public InstrumentedPlayer(Player player, String type, int sampleInterval,
+                              boolean emitEvents) {
+        this.player = player;
+        this.type = type;
+        this.sampleInterval = sampleInterval;
+        this.emitEvents = emitEvents;
+    }
+
+    /**
+     * Plays a turn with the wrapped player, measuring it if it is sampled.
+     *
+     * @param board The board on which the move is to be made.
+     * @param mark  The mark (X or O) associated with the player.
+     */
+
+    @Override
+    public void playTurn(Board board, Mark mark) {
+        playTurn(board, mark, Long.MAX_VALUE);
+    }
+
+    /**
+     * Plays a turn with the wrapped player within a time budget, measuring it if it is sampled.
+     *
+     * @param board         The board on which the move is to be made.
+     * @param mark          The mark (X or O) associated with the player.
+     * @param deadlineNanos The System.nanoTime value by which the move has to be made, or
+     *                      Long.MAX_VALUE if the move is not timed.
+     */
+
+    @Override
+    public void playTurn(Board board, Mark mark, long deadlineNanos) {
+        PlayerTurnEvent event = null;
+        if (emitEvents) {
+            event = new PlayerTurnEvent();
+            event.begin();
+        }
+        if (untilSample > 0) {
+            untilSample--;
+            delegateTurn(board, mark, deadlineNanos);
+            histogram.countTurn();
+        } else {
+            untilSample = sampleInterval - 1;
+            long bytesBefore = THREADS == null ? 0 : THREADS.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            delegateTurn(board, mark, deadlineNanos);
+            long nanos = System.nanoTime() - start;
+            long bytes = THREADS == null ? -1
+                    : THREADS.getCurrentThreadAllocatedBytes() - bytesBefore;
+            histogram.recordTurn(nanos, bytes);
+        }
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.playerType = type;
+                event.mark = mark.name();
+                event.boardSize = board.getSize();
+                event.moveNumber = board.getMoveCount();
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Lets the wrapped player start pondering. Its thinking on the opponent's time is not
+     * measured.
+     *
+     * @param board The board after the player's move.
+     * @param mark  The mark (X or O) associated with the player.
+     */
+
+    @Override
+    public void startPondering(Board board, Mark mark) {
+        player.startPondering(board, mark);
+    }
+
+    /**
+     * Lets the wrapped player stop pondering.
+     */
+
+    @Override
+    public void stopPondering() {
+        player.stopPondering();
+    }
+
+    /**
+     * Lets the wrapped player play its turn, passing the deadline on only if there is one.
+     *
+     * @param board         The board on which the move is to be made.
+     * @param mark          The mark (X or O) associated with the player.
+     * @param deadlineNanos The deadline of the move, or Long.MAX_VALUE if the move is not timed.
+     */
+
+    private void delegateTurn(Board board, Mark mark, long deadlineNanos) {
+        if (deadlineNanos == Long.MAX_VALUE) {
+            player.playTurn(board, mark);
+        } else {
+            player.playTurn(board, mark, deadlineNanos);
+        }
+    }
+
+    /**
+     * Retrieves the player type string the measurements are grouped by.
+     *
+     * @return The player type.
+     */
+
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Retrieves the measurements of this player.
+     *
+     * @return The histogram of its turns.
+     */
+
+    public TurnHistogram getHistogram() {
+        return histogram;
+    }
+
+    /**
+     * Finds the thread bean that reports allocated bytes, if the JVM supports it.
+     *
+     * @return The bean, or null if allocations cannot be measured.
+     */
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!bean.isThreadAllocatedMemorySupported() || !bean.isThreadAllocatedMemoryEnabled()) {
+            return null;
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,265 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The League class plays a round-robin between all the computer player types the PlayerFactory
+ * knows, and rates them on the Elo scale.
+ * Every pairing is split into batches of rounds, and the batches of all the pairings are played
+ * concurrently on one shared pool of worker threads, each batch with its own pair of players.
+ * Whenever a batch finishes, its results are added to the score table and the Bradley-Terry
+ * ratings are refined from their previous values, so the ratings follow the results as they
+ * come in.
+ */
+
+public class League {
+
+    private final static int BATCH_ROUNDS = 256;
+
+    private final static int OPTIONS_INDEX = 3;
+
+    private final static int REFINE_ITERATIONS = 8;
+
+    private final static int FINAL_ITERATIONS = 1000;
+
+    private final static double PRIOR_GAMES = 1;
+
+    private final static double ELO_SCALE = 400 / Math.log(10);
+
+    private final static String HEADER_FORMAT = "%4s  %-10s %8s %8s %9s%n";
+
+    private final static String ROW_FORMAT = "%4d  %-10s %8.1f %8d %8.1f%%%n";
+
+    private final int rounds;
+
+    private final int size;
+
+    private final int winStreak;
+
+    private final TournamentOptions options;
+
+    private final PlayerFactory playerFactory;
+
+    private final String[] types;
+
+    private final double[][] scores;
+
+    private final long[][] games;
+
+    private final double[] strengths;
+
+    private long playedRounds = 0;
+
+    private long nextSummary;
+
+    private final TimeControl timeControl;
+
+    /**
+     * Constructs a League.
+     *
+     * @param rounds    The number of rounds of every pairing.
+     * @param size      The size of the game board.
+     * @param winStreak The streak length required for a win.
+     * @param options   The optional settings: the number of workers and the engine settings.
+     */
+    public League(int rounds, int size, int winStreak, TournamentOptions options) {
+        this.rounds = rounds;
+        this.size = size;
+        this.winStreak = winStreak;
+        this.options = options;
+        this.playerFactory = new PlayerFactory(options);
+        this.types = playerFactory.getComputerPlayerTypes();
+        this.scores = new double[types.length][types.length];
+        this.games = new long[types.length][types.length];
+        this.strengths = new double[types.length];
+        Arrays.fill(strengths, 1);
+        this.nextSummary = options.getSummaryInterval();
+        this.timeControl = options.createTimeControl();
+    }
+
+    /**
+     * Plays all the pairings and prints the final rating table.
+     */
+
+    public void playLeague() {
+        ExecutorService pool = Executors.newFixedThreadPool(options.getWorkers());
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int firstRound = 0; firstRound < rounds; firstRound += BATCH_ROUNDS) {
+            int lastRound = Math.min(rounds, firstRound + BATCH_ROUNDS);
+            for (int first = 0; first < types.length; first++) {
+                for (int second = first + 1; second < types.length; second++) {
+                    int player1 = first;
+                    int player2 = second;
+                    int batchStart = firstRound;
+                    tasks.add(pool.submit(() -> playBatch(player1, player2, batchStart,
+                            lastRound)));
+                }
+            }
+        }
+        pool.shutdown();
+        try {
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException e) {
+            pool.shutdownNow();
+            throw new IllegalStateException(e.getCause());
+        }
+        printRatings(FINAL_ITERATIONS);
+    }
+
+    /**
+     * Plays a batch of rounds of one pairing with a fresh pair of players, whose two games share
+     * one board. The first player plays X in even rounds and O in odd rounds.
+     *
+     * @param player1    The index of the type of the first player.
+     * @param player2    The index of the type of the second player.
+     * @param firstRound The index of the first round of the batch.
+     * @param lastRound  The index after the last round of the batch.
+     */
+
+    private void playBatch(int player1, int player2, int firstRound, int lastRound) {
+        Player first = playerFactory.buildPlayer(types[player1]);
+        Player second = playerFactory.buildPlayer(types[player2]);
+        Renderer renderer = new VoidRenderer();
+        TournamentStatistics results = new TournamentStatistics();
+        Game firstAsX = new Game(first, second, size, winStreak, renderer, timeControl);
+        Game firstAsO = new Game(firstAsX);
+        for (int round = firstRound; round < lastRound; round++) {
+            boolean player1IsX = round % 2 == 0;
+            Game game = player1IsX ? firstAsX : firstAsO;
+            game.reset();
+            int result = TournamentStatistics.resultOf(game.run(), player1IsX);
+            results.addRound(player1IsX, result, game.getMoveCount());
+        }
+        addResults(player1, player2, results);
+    }
+
+    /**
+     * Adds the results of a batch to the score table and refines the ratings. A tie scores half
+     * a point for each player.
+     *
+     * @param player1 The index of the type of the first player.
+     * @param player2 The index of the type of the second player.
+     * @param results The results of the batch.
+     */
+
+    private synchronized void addResults(int player1, int player2, TournamentStatistics results) {
+        double ties = results.getCount(TournamentStatistics.TIE) / 2.0;
+        scores[player1][player2] += results.getCount(TournamentStatistics.PLAYER1_WIN) + ties;
+        scores[player2][player1] += results.getCount(TournamentStatistics.PLAYER2_WIN) + ties;
+        games[player1][player2] += results.getRounds();
+        games[player2][player1] += results.getRounds();
+        refineRatings(REFINE_ITERATIONS);
+        playedRounds += results.getRounds();
+        if (nextSummary > 0 && playedRounds >= nextSummary) {
+            printRatings(0);
+            while (nextSummary <= playedRounds) {
+                nextSummary += options.getSummaryInterval();
+            }
+        }
+    }
+
+    /**
+     * Refines the Bradley-Terry strengths of the players with minorization-maximization steps,
+     * starting from the current strengths. Every pairing counts an extra tied game, so a player
+     * without a single point still gets a finite rating.
+     *
+     * @param iterations The number of steps.
+     */
+
+    private synchronized void refineRatings(int iterations) {
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            double logSum = 0;
+            for (int player = 0; player < types.length; player++) {
+                double points = 0;
+                double weight = 0;
+                for (int opponent = 0; opponent < types.length; opponent++) {
+                    if (opponent == player) {
+                        continue;
+                    }
+                    points += scores[player][opponent] + PRIOR_GAMES / 2;
+                    weight += (games[player][opponent] + PRIOR_GAMES)
+                            / (strengths[player] + strengths[opponent]);
+                }
+                strengths[player] = points / weight;
+                logSum += Math.log(strengths[player]);
+            }
+            double scale = Math.exp(-logSum / types.length);
+            for (int player = 0; player < types.length; player++) {
+                strengths[player] *= scale;
+            }
+        }
+    }
+
+    /**
+     * Retrieves the Elo rating of a player, relative to an average rating of 0.
+     *
+     * @param player The index of the type of the player.
+     * @return The rating.
+     */
+
+    private double getElo(int player) {
+        return ELO_SCALE * Math.log(strengths[player]);
+    }
+
+    /**
+     * Prints the rating table, from the strongest player to the weakest.
+     *
+     * @param iterations The number of extra refinement steps before printing.
+     */
+
+    private synchronized void printRatings(int iterations) {
+        refineRatings(iterations);
+        Integer[] ranking = new Integer[types.length];
+        for (int player = 0; player < types.length; player++) {
+            ranking[player] = player;
+        }
+        Arrays.sort(ranking, (first, second) -> Double.compare(getElo(second), getElo(first)));
+        System.out.println("######### Ratings #########");
+        System.out.printf(Locale.ROOT, HEADER_FORMAT, "rank", "player", "elo", "games", "score");
+        for (int rank = 0; rank < types.length; rank++) {
+            int player = ranking[rank];
+            long played = 0;
+            double points = 0;
+            for (int opponent = 0; opponent < types.length; opponent++) {
+                played += games[player][opponent];
+                points += scores[player][opponent];
+            }
+            System.out.printf(Locale.ROOT, ROW_FORMAT, rank + 1, types[player], getElo(player),
+                    played, played == 0 ? 0 : 100 * points / played);
+        }
+    }
+
+    /**
+     * The main method for running a league. It accepts command-line arguments for the number
+     * of rounds of every pairing, the board size and the win streak, optionally followed by
+     * name=value options such as workers=8 or interval=1000.
+     *
+     * @param args Command-line arguments.
+     */
+
+    public static void main(String[] args) {
+        int rounds = Integer.parseInt(args[0]);
+        int size = Integer.parseInt(args[1]);
+        int winStreak = Integer.parseInt(args[2]);
+        TournamentOptions options = TournamentOptions.parse(args, OPTIONS_INDEX);
+        if (options == null) {
+            System.out.println(Constants.UNKNOWN_OPTION);
+            return;
+        }
+        if (winStreak < 2 || winStreak > size) {
+            winStreak = size;
+        }
+        new League(rounds, size, winStreak, options).playLeague();
+    }
+}
@@ -0,0 +1,444 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * The MctsPlayer class implements the Player interface with Monte Carlo Tree Search.
+ * Every move it grows a search tree for a fixed wall-clock budget: children are selected by UCT,
+ * and new leaves are scored by random playouts. Several threads share the same tree, and a
+ * virtual loss on the nodes a thread is exploring pushes the other threads towards other
+ * branches. The tree is kept in primitive arrays that are allocated once, so the search does not
+ * allocate while it runs.
+ */
+
+public class MctsPlayer implements Player {
+
+    /**
+     * The wall-clock budget of a single move, in milliseconds, when none is configured.
+     */
+    public static final long DEFAULT_MOVE_TIME_MILLIS = 50;
+
+    /**
+     * The number of search threads when none is configured. A single thread leaves the cores to
+     * the tournament workers; more threads are opted into with the threads option.
+     */
+    public static final int DEFAULT_THREADS = 1;
+
+    private static final int TREE_CAPACITY = 1 << 18;
+
+    private static final int ROOT = 0;
+
+    private static final int UNEXPANDED = 0;
+
+    private static final int EXPANDING = 1;
+
+    private static final int EXPANDED = 2;
+
+    private static final int EXPAND_THRESHOLD = 8;
+
+    private static final int VIRTUAL_LOSS = 1;
+
+    private static final double EXPLORATION = 1.4;
+
+    private static final int WIN_POINTS = 2;
+
+    private static final int DRAW_POINTS = 1;
+
+    private static final int DRAW = Mark.BLANK.ordinal();
+
+    private static final int OPPONENT_SUM = Mark.X.ordinal() + Mark.O.ordinal();
+
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+
+    private static final long DEADLINE_MARGIN_NANOS = 1_000_000L;
+
+    private static final long HELPER_KEEP_ALIVE_SECONDS = 1;
+
+    private final long moveTimeNanos;
+
+    private final int threads;
+
+    private final int[] nodeMove = new int[TREE_CAPACITY];
+
+    private final int[] firstChild = new int[TREE_CAPACITY];
+
+    private final int[] childCount = new int[TREE_CAPACITY];
+
+    private final AtomicIntegerArray visits = new AtomicIntegerArray(TREE_CAPACITY);
+
+    private final AtomicIntegerArray points = new AtomicIntegerArray(TREE_CAPACITY);
+
+    private final AtomicIntegerArray expansion = new AtomicIntegerArray(TREE_CAPACITY);
+
+    private final AtomicInteger nodeCount = new AtomicInteger();
+
+    private final Future<?>[] helpers;
+
+    private ExecutorService pool;
+
+    private Worker[] workers;
+
+    private long deadline;
+
+    private int rootSide;
+
+    /**
+     * Constructs an MctsPlayer with the default move time and number of threads.
+     */
+    public MctsPlayer() {
+        this(DEFAULT_MOVE_TIME_MILLIS, DEFAULT_THREADS);
+    }
+
+    /**
+     * Constructs an MctsPlayer with a custom move time and number of threads.
+     *
+     * @param moveTimeMillis The wall-clock budget of a single move, in milliseconds.
+     * @param threads        The number of threads searching the shared tree.
+     */
+    public MctsPlayer(long moveTimeMillis, int threads) {
+        this.moveTimeNanos = moveTimeMillis * NANOS_PER_MILLI;
+        this.threads = threads;
+        this.helpers = new Future<?>[threads - 1];
+    }
+
+    /**
+     * Plays a turn on the board by searching the tree until the move time is spent, then marking
+     * the most visited move.
+     *
+     * @param board The board on which the move is to be made.
+     * @param mark  The mark (X or O) associated with the player.
+     */
+
+    @Override
+    public void playTurn(Board board, Mark mark) {
+        playTurn(board, mark, Long.MAX_VALUE);
+    }
+
+    /**
+     * Plays a turn on the board by searching the tree until the move time is spent or the
+     * deadline is near, whichever comes first, then marking the most visited move.
+     *
+     * @param board         The board on which the move is to be made.
+     * @param mark          The mark (X or O) associated with the player.
+     * @param deadlineNanos The System.nanoTime value by which the move has to be made, or
+     *                      Long.MAX_VALUE if the move is not timed.
+     */
+
+    @Override
+    public void playTurn(Board board, Mark mark, long deadlineNanos) {
+        prepareSearch(board, mark);
+        if (deadlineNanos != Long.MAX_VALUE
+                && deadlineNanos - DEADLINE_MARGIN_NANOS - deadline < 0) {
+            deadline = deadlineNanos - DEADLINE_MARGIN_NANOS;
+        }
+        for (int i = 0; i < helpers.length; i++) {
+            Worker helper = workers[i + 1];
+            helpers[i] = pool.submit(helper::search);
+        }
+        workers[0].search();
+        try {
+            for (Future<?> helper : helpers) {
+                helper.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        int cell = bestMove(board);
+        int size = board.getSize();
+        board.putMark(mark, cell / size, cell % size);
+    }
+
+    /**
+     * Resets the tree to a single root node and loads the board into every worker,
+     * creating the workers and the thread pool the first time or when the board changes.
+     * The helper threads end after a second without work, so a player that is no longer used
+     * does not keep its threads alive in a long-running process.
+     *
+     * @param board The board on which the move is to be made.
+     * @param mark  The mark (X or O) associated with the player.
+     */
+
+    private void prepareSearch(Board board, Mark mark) {
+        if (workers == null || workers[0].position.getSize() != board.getSize()
+                || workers[0].position.getWinStreak() != board.getWinStreak()) {
+            workers = new Worker[threads];
+            for (int i = 0; i < threads; i++) {
+                workers[i] = new Worker(board, i);
+            }
+        } else {
+            for (Worker worker : workers) {
+                worker.position.load(board);
+            }
+        }
+        if (pool == null && threads > 1) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads - 1, threads - 1,
+                    HELPER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    runnable -> {
+                        Thread thread = new Thread(runnable);
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            pool = executor;
+        }
+        rootSide = mark.ordinal();
+        nodeCount.set(ROOT + 1);
+        resetNode(ROOT, -1);
+        deadline = System.nanoTime() + moveTimeNanos;
+    }
+
+    /**
+     * Chooses the most visited move at the root.
+     *
+     * @param board The board on which the move is to be made.
+     * @return The index of the chosen cell.
+     */
+
+    private int bestMove(Board board) {
+        if (expansion.get(ROOT) != EXPANDED || childCount[ROOT] == 0) {
+            return firstBlankCell(board);
+        }
+        int best = firstChild[ROOT];
+        for (int child = best + 1; child < firstChild[ROOT] + childCount[ROOT]; child++) {
+            if (visits.get(child) > visits.get(best)) {
+                best = child;
+            }
+        }
+        return nodeMove[best];
+    }
+
+    /**
+     * Finds the first blank cell of a board, used when the tree could not be grown.
+     *
+     * @param board The board on which the move is to be made.
+     * @return The index of the first blank cell.
+     */
+
+    private static int firstBlankCell(Board board) {
+        int size = board.getSize();
+        for (int cell = 0; cell < size * size; cell++) {
+            if (board.getMark(cell / size, cell % size) == Mark.BLANK) {
+                return cell;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Clears the statistics of a node before it is used.
+     *
+     * @param node The index of the node.
+     * @param cell The move leading to the node.
+     */
+
+    private void resetNode(int node, int cell) {
+        nodeMove[node] = cell;
+        firstChild[node] = 0;
+        childCount[node] = 0;
+        visits.set(node, 0);
+        points.set(node, 0);
+        expansion.set(node, UNEXPANDED);
+    }
+
+    /**
+     * The Worker class holds the private state of one search thread: its own copy of the
+     * position, its random generator and the buffers of the current iteration.
+     */
+
+    private class Worker {
+
+        private final SearchPosition position;
+
+        private final SplittableRandom random;
+
+        private final int[] path;
+
+        private final int[] blankCells;
+
+        /**
+         * Constructs a worker for a board.
+         *
+         * @param board The board on which the move is to be made.
+         * @param index The index of the worker, used to seed its random generator.
+         */
+        Worker(Board board, int index) {
+            position = new SearchPosition(board);
+            random = new SplittableRandom(System.nanoTime() + index);
+            path = new int[position.getCellCount() + 1];
+            blankCells = new int[position.getCellCount()];
+        }
+
+        /**
+         * Runs search iterations until the move time is spent, at least one.
+         */
+
+        void search() {
+            do {
+                iterate();
+            } while (System.nanoTime() < deadline);
+        }
+
+        /**
+         * Runs one iteration: selects a path down the tree, expands its last node when it was
+         * visited before, finishes the game with a random playout and backs the result up.
+         */
+
+        private void iterate() {
+            int node = ROOT;
+            int depth = 0;
+            int side = rootSide;
+            int winner = -1;
+            while (winner < 0) {
+                if (expansion.get(node) != EXPANDED
+                        && (node != ROOT && visits.get(node) < EXPAND_THRESHOLD || !expand(node))) {
+                    break;
+                }
+                if (childCount[node] == 0) {
+                    break;
+                }
+                node = selectChild(node);
+                visits.addAndGet(node, VIRTUAL_LOSS);
+                path[++depth] = node;
+                position.play(nodeMove[node], side);
+                if (position.isWinningMove(nodeMove[node])) {
+                    winner = side;
+                } else if (position.getBlankCount() == 0) {
+                    winner = DRAW;
+                }
+                side = OPPONENT_SUM - side;
+            }
+            if (winner < 0) {
+                winner = playout(side);
+            }
+            backUp(depth, winner);
+            for (int i = 0; i < depth; i++) {
+                position.undo();
+            }
+        }
+
+        /**
+         * Creates the children of a node, one for every blank cell, unless another thread is
+         * already expanding it or the tree is full.
+         *
+         * @param node The index of the node.
+         * @return True if the node has been expanded by this thread, false otherwise.
+         */
+
+        private boolean expand(int node) {
+            int count = position.getBlankCount();
+            if (nodeCount.get() + count > TREE_CAPACITY
+                    || !expansion.compareAndSet(node, UNEXPANDED, EXPANDING)) {
+                return false;
+            }
+            int first = nodeCount.getAndAdd(count);
+            if (first + count > TREE_CAPACITY) {
+                expansion.set(node, UNEXPANDED);
+                return false;
+            }
+            int child = first;
+            for (int cell = 0; cell < position.getCellCount(); cell++) {
+                if (position.isEmpty(cell)) {
+                    resetNode(child++, cell);
+                }
+            }
+            firstChild[node] = first;
+            childCount[node] = count;
+            expansion.set(node, EXPANDED);
+            return true;
+        }
+
+        /**
+         * Selects the child of a node with the highest UCT value. Children never visited are
+         * selected first.
+         *
+         * @param node The index of an expanded node.
+         * @return The index of the selected child.
+         */
+
+        private int selectChild(int node) {
+            int first = firstChild[node];
+            int last = first + childCount[node];
+            double logVisits = Math.log(Math.max(1, visits.get(node)));
+            int best = first;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int child = first; child < last; child++) {
+                int childVisits = visits.get(child);
+                if (childVisits == 0) {
+                    return child;
+                }
+                double value = points.get(child) / (double) (WIN_POINTS * childVisits)
+                        + EXPLORATION * Math.sqrt(logVisits / childVisits);
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = child;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Finishes the game with random moves and takes them back.
+         *
+         * @param side The ordinal of the mark to move.
+         * @return The ordinal of the winner's mark, or DRAW.
+         */
+
+        private int playout(int side) {
+            int count = 0;
+            for (int cell = 0; cell < position.getCellCount(); cell++) {
+                if (position.isEmpty(cell)) {
+                    blankCells[count++] = cell;
+                }
+            }
+            int played = 0;
+            int winner = DRAW;
+            while (count > 0) {
+                int index = random.nextInt(count);
+                int cell = blankCells[index];
+                blankCells[index] = blankCells[--count];
+                position.play(cell, side);
+                played++;
+                if (position.isWinningMove(cell)) {
+                    winner = side;
+                    break;
+                }
+                side = OPPONENT_SUM - side;
+            }
+            for (int i = 0; i < played; i++) {
+                position.undo();
+            }
+            return winner;
+        }
+
+        /**
+         * Adds the result of an iteration to the nodes on its path, replacing the virtual loss
+         * with a real visit. Each node is scored for the player who moved into it.
+         *
+         * @param depth  The length of the path below the root.
+         * @param winner The ordinal of the winner's mark, or DRAW.
+         */
+
+        private void backUp(int depth, int winner) {
+            int mover = rootSide;
+            for (int i = 1; i <= depth; i++) {
+                int node = path[i];
+                visits.addAndGet(node, 1 - VIRTUAL_LOSS);
+                if (winner == mover) {
+                    points.addAndGet(node, WIN_POINTS);
+                } else if (winner == DRAW) {
+                    points.addAndGet(node, DRAW_POINTS);
+                }
+                mover = OPPONENT_SUM - mover;
+            }
+            visits.incrementAndGet(ROOT);
+        }
+    }
+}
@@ -0,0 +1,336 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The NTupleNetwork class scores positions with an n-tuple network. Every straight window of
+ * TUPLE_LENGTH cells (the win streak, at most MAX_TUPLE_LENGTH) in every row, column and
+ * diagonal is a tuple with a lookup table of a weight per pattern of its cells, the pattern being
+ * indexed in base 3 by the ordinals of the marks. All the tables are slices of one flat float[].
+ * The value of a position is the tanh of the sum of the weights its patterns select, from X's
+ * point of view: near 1 when X is winning and near -1 when O is.
+ * A position is followed as an int[] holding the pattern index of every tuple, which placing a
+ * mark updates for the few tuples through its cell; a move is then scored by adding the
+ * weight differences of those tuples, a handful of array lookups.
+ * Training threads update the shared weights without locks, Hogwild style: a float write is
+ * atomic, and an update lost to a race is only a small loss of learning.
+ */
+
+public class NTupleNetwork {
+
+    /**
+     * The longest tuple, which keeps a table at 3^6 weights.
+     */
+    public static final int MAX_TUPLE_LENGTH = 6;
+
+    private static final int MAGIC = 0x5454544E;
+
+    private static final int HEADER_BYTES = Integer.BYTES + 2;
+
+    private static final int MARK_VALUES = 3;
+
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+
+    private static final String FILE_FORMAT = "ntuple-%d-%d.bin";
+
+    private static final Map<String, NTupleNetwork> LOADED = new HashMap<>();
+
+    private final int size;
+
+    private final int winStreak;
+
+    private final int tupleLength;
+
+    private final int tableSize;
+
+    private final int tupleCount;
+
+    private final int[] cellStarts;
+
+    private final int[] cellTuples;
+
+    private final int[] cellPowers;
+
+    private final float[] weights;
+
+    /**
+     * Constructs a NTupleNetwork with all its weights at zero.
+     *
+     * @param size      The size of the board.
+     * @param winStreak The streak length required for a win.
+     */
+    public NTupleNetwork(int size, int winStreak) {
+        this.size = size;
+        this.winStreak = winStreak;
+        this.tupleLength = Math.min(winStreak, MAX_TUPLE_LENGTH);
+        int table = 1;
+        for (int i = 0; i < tupleLength; i++) {
+            table *= MARK_VALUES;
+        }
+        this.tableSize = table;
+        int[] tupleCells = buildTuples();
+        this.tupleCount = tupleCells.length / tupleLength;
+        this.cellStarts = new int[size * size + 1];
+        for (int cell : tupleCells) {
+            cellStarts[cell + 1]++;
+        }
+        for (int cell = 0; cell < size * size; cell++) {
+            cellStarts[cell + 1] += cellStarts[cell];
+        }
+        this.cellTuples = new int[tupleCells.length];
+        this.cellPowers = new int[tupleCells.length];
+        int[] filled = cellStarts.clone();
+        for (int tuple = 0; tuple < tupleCount; tuple++) {
+            int power = 1;
+            for (int i = 0; i < tupleLength; i++) {
+                int cell = tupleCells[tuple * tupleLength + i];
+                cellTuples[filled[cell]] = tuple;
+                cellPowers[filled[cell]] = power;
+                filled[cell]++;
+                power *= MARK_VALUES;
+            }
+        }
+        this.weights = new float[tupleCount * tableSize];
+    }
+
+    /**
+     * Finds the network of a board in a directory, loading it on first use. A board whose
+     * network file does not exist gets a network with all its weights at zero, which the
+     * NTupleTrainer trains and saves.
+     *
+     * @param directory The directory holding the network files.
+     * @param size      The size of the board.
+     * @param winStreak The streak length required for a win.
+     * @return The network, shared by all its users.
+     * @throws IOException If an existing network file cannot be read.
+     */
+
+    public static synchronized NTupleNetwork forBoard(String directory, int size, int winStreak)
+            throws IOException {
+        Path path = getPath(directory, size, winStreak);
+        String key = path.toAbsolutePath().toString();
+        NTupleNetwork network = LOADED.get(key);
+        if (network == null) {
+            network = Files.exists(path) ? load(path.toString())
+                    : new NTupleNetwork(size, winStreak);
+            LOADED.put(key, network);
+        }
+        return network;
+    }
+
+    /**
+     * Builds the path of the network file of a board.
+     *
+     * @param directory The directory holding the network files.
+     * @param size      The size of the board.
+     * @param winStreak The streak length required for a win.
+     * @return The path of the file.
+     */
+
+    public static Path getPath(String directory, int size, int winStreak) {
+        return Paths.get(directory, String.format(FILE_FORMAT, size, winStreak));
+    }
+
+    /**
+     * Loads a network from a file.
+     *
+     * @param path The path of the file.
+     * @return The network.
+     * @throws IOException If the file cannot be read or is not a network of a valid size.
+     */
+
+    public static NTupleNetwork load(String path) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not an n-tuple network: " + path);
+        }
+        NTupleNetwork network = new NTupleNetwork(buffer.get(Integer.BYTES),
+                buffer.get(Integer.BYTES + 1));
+        if (buffer.limit() != HEADER_BYTES + network.weights.length * Float.BYTES) {
+            throw new IOException("Not an n-tuple network: " + path);
+        }
+        buffer.position(HEADER_BYTES);
+        buffer.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(network.weights);
+        return network;
+    }
+
+    /**
+     * Writes the network to a file.
+     *
+     * @param path The path of the file.
+     * @throws IOException If the file cannot be written.
+     */
+
+    public void write(String path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + weights.length * Float.BYTES);
+        buffer.putInt(MAGIC).put((byte) size).put((byte) winStreak);
+        buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().put(weights);
+        buffer.clear();
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Retrieves the size of the board.
+     *
+     * @return The size of the square board.
+     */
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Retrieves the streak length required for a win.
+     *
+     * @return The win streak.
+     */
+
+    public int getWinStreak() {
+        return winStreak;
+    }
+
+    /**
+     * Retrieves the number of tuples, which is the length of a pattern index array.
+     *
+     * @return The number of tuples.
+     */
+
+    public int getTupleCount() {
+        return tupleCount;
+    }
+
+    /**
+     * Sets a pattern index array to the empty board.
+     *
+     * @param patterns The pattern index of every tuple.
+     */
+
+    public void clear(int[] patterns) {
+        for (int tuple = 0; tuple < tupleCount; tuple++) {
+            patterns[tuple] = tuple * tableSize;
+        }
+    }
+
+    /**
+     * Updates a pattern index array for a mark placed on a blank cell.
+     *
+     * @param patterns The pattern index of every tuple.
+     * @param cell     The cell index (row * size + col) of the mark.
+     * @param mark     The mark placed.
+     */
+
+    public void place(int[] patterns, int cell, Mark mark) {
+        int value = mark.ordinal();
+        for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; i++) {
+            patterns[cellTuples[i]] += cellPowers[i] * value;
+        }
+    }
+
+    /**
+     * Sums the weights a position selects.
+     *
+     * @param patterns The pattern index of every tuple of the position.
+     * @return The sum, before tanh.
+     */
+
+    public float sum(int[] patterns) {
+        float sum = 0;
+        for (int tuple = 0; tuple < tupleCount; tuple++) {
+            sum += weights[patterns[tuple]];
+        }
+        return sum;
+    }
+
+    /**
+     * Computes the sum of the weights after a mark is placed on a blank cell, from the sum
+     * before it, looking up only the tuples through the cell.
+     *
+     * @param patterns The pattern index of every tuple, before the mark.
+     * @param sum      The sum of the position before the mark.
+     * @param cell     The cell index (row * size + col) of the mark.
+     * @param mark     The mark placed.
+     * @return The sum after the mark, before tanh.
+     */
+
+    public float sumAfter(int[] patterns, float sum, int cell, Mark mark) {
+        int value = mark.ordinal();
+        for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; i++) {
+            int pattern = patterns[cellTuples[i]];
+            sum += weights[pattern + cellPowers[i] * value] - weights[pattern];
+        }
+        return sum;
+    }
+
+    /**
+     * Turns a sum of weights into the value of a position.
+     *
+     * @param sum The sum of the weights.
+     * @return The value from X's point of view, between -1 and 1.
+     */
+
+    public static float value(float sum) {
+        return (float) Math.tanh(sum);
+    }
+
+    /**
+     * Moves the value of a position toward a target by gradient descent on the squared error.
+     * It may run on several threads at once.
+     *
+     * @param patterns The pattern index of every tuple of the position.
+     * @param value    The current value of the position.
+     * @param target   The value the position should have.
+     * @param rate     The learning rate, shared by the weights of the tuples.
+     */
+
+    public void update(int[] patterns, float value, float target, float rate) {
+        float step = rate / tupleCount * (target - value) * (1 - value * value);
+        for (int tuple = 0; tuple < tupleCount; tuple++) {
+            weights[patterns[tuple]] += step;
+        }
+    }
+
+    /**
+     * Lists the cells of every tuple: the windows of TUPLE_LENGTH cells of the rows, the
+     * columns, the diagonals and the anti-diagonals.
+     *
+     * @return The cells of tuple t at indices t * tupleLength to (t + 1) * tupleLength - 1.
+     */
+
+    private int[] buildTuples() {
+        int[] cells = new int[DIRECTIONS.length * size * size * tupleLength];
+        int count = 0;
+        for (int[] direction : DIRECTIONS) {
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    int lastRow = row + direction[0] * (tupleLength - 1);
+                    int lastCol = col + direction[1] * (tupleLength - 1);
+                    if (lastRow < 0 || lastRow >= size || lastCol < 0 || lastCol >= size) {
+                        continue;
+                    }
+                    for (int i = 0; i < tupleLength; i++) {
+                        cells[count++] = (row + direction[0] * i) * size
+                                + col + direction[1] * i;
+                    }
+                }
+            }
+        }
+        int[] tupleCells = new int[count];
+        System.arraycopy(cells, 0, tupleCells, 0, count);
+        return tupleCells;
+    }
+}
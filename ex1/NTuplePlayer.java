@@ -0,0 +1,137 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * The NTuplePlayer class implements the Player interface with a learned n-tuple network.
+ * A winning move is taken at once; otherwise every blank cell is scored by the value of the
+ * position after it, and the best one for the player's mark is marked. The player follows the
+ * game in its own pattern index array, adding only the moves made since its last turn, so a
+ * move costs a few lookups per blank cell.
+ * The network of a board is loaded from a directory the first time the board is seen, and has
+ * to be trained by the NTupleTrainer beforehand; an untrained network only takes winning moves.
+ */
+
+public class NTuplePlayer implements Player {
+
+    private final String directory;
+
+    private NTupleNetwork network;
+
+    private int[] patterns;
+
+    private int followedMoves;
+
+    private int lastFollowedCell;
+
+    /**
+     * Constructs a NTuplePlayer loading its networks from a directory.
+     *
+     * @param directory The directory holding the network files.
+     */
+    public NTuplePlayer(String directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Constructs a NTuplePlayer with a given network, for the boards of its size and win streak
+     * only.
+     *
+     * @param network The network scoring the moves.
+     */
+    public NTuplePlayer(NTupleNetwork network) {
+        this.directory = null;
+        this.network = network;
+        this.patterns = new int[network.getTupleCount()];
+        this.followedMoves = -1;
+    }
+
+    /**
+     * Plays a turn on the board by marking the blank cell with the best value.
+     *
+     * @param board The board on which the move is to be made.
+     * @param mark  The mark (X or O) associated with the player.
+     */
+
+    @Override
+    public void playTurn(Board board, Mark mark) {
+        follow(board);
+        int size = board.getSize();
+        float sum = network.sum(patterns);
+        float sign = mark == Mark.X ? 1 : -1;
+        int bestCell = -1;
+        float bestScore = Float.NEGATIVE_INFINITY;
+        for (int cell = 0; cell < size * size; cell++) {
+            if (board.getMark(cell / size, cell % size) != Mark.BLANK) {
+                continue;
+            }
+            if (winsAt(board, mark, cell)) {
+                bestCell = cell;
+                break;
+            }
+            float score = sign * network.sumAfter(patterns, sum, cell, mark);
+            if (score > bestScore) {
+                bestScore = score;
+                bestCell = cell;
+            }
+        }
+        board.putMark(mark, bestCell / size, bestCell % size);
+    }
+
+    /**
+     * Brings the pattern index array up to date with the board, adding the moves made since
+     * the last turn, or starting over when the board holds another game.
+     *
+     * @param board The board on which the move is to be made.
+     * @throws IllegalArgumentException If the player was given a network for other boards.
+     */
+
+    private void follow(Board board) {
+        if (network == null || network.getSize() != board.getSize()
+                || network.getWinStreak() != board.getWinStreak()) {
+            if (directory == null) {
+                throw new IllegalArgumentException("The network is for " + network.getSize()
+                        + "x" + network.getSize() + " boards with a win streak of "
+                        + network.getWinStreak() + ", not " + board.getSize() + "x"
+                        + board.getSize() + " with " + board.getWinStreak());
+            }
+            try {
+                network = NTupleNetwork.forBoard(directory, board.getSize(),
+                        board.getWinStreak());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            patterns = new int[network.getTupleCount()];
+            followedMoves = -1;
+        }
+        int moves = board.getMoveCount();
+        if (followedMoves < 0 || moves < followedMoves
+                || followedMoves > 0 && board.getMove(followedMoves - 1) != lastFollowedCell) {
+            network.clear(patterns);
+            followedMoves = 0;
+        }
+        int size = board.getSize();
+        for (; followedMoves < moves; followedMoves++) {
+            int cell = board.getMove(followedMoves);
+            network.place(patterns, cell, board.getMark(cell / size, cell % size));
+            lastFollowedCell = cell;
+        }
+    }
+
+    /**
+     * Checks whether a mark on a blank cell would win the game at once.
+     *
+     * @param board The board.
+     * @param mark  The mark of the player.
+     * @param cell  The blank cell.
+     * @return True if the move completes a streak.
+     */
+
+    private static boolean winsAt(Board board, Mark mark, int cell) {
+        int row = cell / board.getSize();
+        int col = cell % board.getSize();
+        board.putMark(mark, row, col);
+        boolean wins = board.completesStreak(row, col);
+        board.unmakeMove();
+        return wins;
+    }
+}
@@ -0,0 +1,218 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The NTupleTrainer class trains the n-tuple network of a board by temporal-difference learning
+ * from self-play. Each worker plays whole games with an NTuplePlayer on the shared network,
+ * moving at random with a small probability to explore, and keeps the pattern indexes of the
+ * position after every move. When a game ends, every such position is moved toward its
+ * lambda-return, computed backwards from the result: 1 for an X win, -1 for an O win and 0 for
+ * a draw. The workers update the shared weights without locks.
+ * Training continues from the network file of the board if there is one, and the network is
+ * written back at the end, then played against the GeniusPlayer and the WhateverPlayer.
+ */
+
+public class NTupleTrainer {
+
+    private final static int CLAIM_GAMES = 64;
+
+    private final static int OPTIONS_INDEX = 3;
+
+    private final static int EVALUATION_GAMES = 1000;
+
+    private final static long SEED_STRIDE = 0x9E3779B97F4A7C15L;
+
+    private final static String EVALUATION_FORMAT =
+            "ntuple vs %-8s won: %d, lost: %d, ties: %d%n";
+
+    private final long games;
+
+    private final int size;
+
+    private final int winStreak;
+
+    private final TournamentOptions options;
+
+    private final AtomicLong nextGame = new AtomicLong();
+
+    private NTupleNetwork network;
+
+    /**
+     * Constructs an NTupleTrainer.
+     *
+     * @param games     The number of self-play games to learn from.
+     * @param size      The size of the game board.
+     * @param winStreak The streak length required for a win.
+     * @param options   The optional settings: the number of workers, the seed, the learning
+     *                  rate, lambda, the exploration rate and the network directory.
+     */
+    public NTupleTrainer(long games, int size, int winStreak, TournamentOptions options) {
+        this.games = games;
+        this.size = size;
+        this.winStreak = winStreak;
+        this.options = options;
+    }
+
+    /**
+     * Trains the network, writes it to its file and prints how it plays.
+     *
+     * @throws IOException If the network file cannot be read or written.
+     */
+
+    public void train() throws IOException {
+        String directory = options.getNetworkDirectory();
+        network = NTupleNetwork.forBoard(directory, size, winStreak);
+        int workers = options.getWorkers();
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int worker = 0; worker < workers; worker++) {
+            tasks.add(pool.submit(this::playGames));
+        }
+        pool.shutdown();
+        try {
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException e) {
+            pool.shutdownNow();
+            throw new IllegalStateException(e.getCause());
+        }
+        network.write(NTupleNetwork.getPath(directory, size, winStreak).toString());
+        evaluate(new GeniusPlayer(), "genius");
+        evaluate(new WhateverPlayer(), "whatever");
+    }
+
+    /**
+     * Plays self-play games on a single worker until all the games are claimed.
+     */
+
+    private void playGames() {
+        Board board = new Board(size, winStreak);
+        NTuplePlayer player = new NTuplePlayer(network);
+        int[] patterns = new int[network.getTupleCount()];
+        int[][] afterstates = new int[size * size][network.getTupleCount()];
+        while (true) {
+            long firstGame = nextGame.getAndAdd(CLAIM_GAMES);
+            if (firstGame >= games) {
+                return;
+            }
+            long lastGame = Math.min(games, firstGame + CLAIM_GAMES);
+            for (long game = firstGame; game < lastGame; game++) {
+                SplittableRandom random =
+                        new SplittableRandom(options.getSeed() + game * SEED_STRIDE);
+                playGame(board, player, patterns, afterstates, random);
+            }
+        }
+    }
+
+    /**
+     * Plays a single self-play game and learns from it.
+     *
+     * @param board       The board to play on.
+     * @param player      The player making the greedy moves.
+     * @param patterns    The pattern index array following the game.
+     * @param afterstates The pattern indexes of the position after every move.
+     * @param random      The generator of the exploring moves.
+     */
+
+    private void playGame(Board board, NTuplePlayer player, int[] patterns,
+                          int[][] afterstates, SplittableRandom random) {
+        board.reset();
+        network.clear(patterns);
+        Mark mark = Mark.X;
+        int moves = 0;
+        float result;
+        while (true) {
+            if (random.nextDouble() < options.getExplorationRate()) {
+                int cell = board.getBlankCell(random.nextInt(board.getBlankCount()));
+                board.putMark(mark, cell / size, cell % size);
+            } else {
+                player.playTurn(board, mark);
+            }
+            int cell = board.getMove(moves);
+            network.place(patterns, cell, mark);
+            System.arraycopy(patterns, 0, afterstates[moves], 0, patterns.length);
+            moves++;
+            if (board.completesStreak(cell / size, cell % size)) {
+                result = mark == Mark.X ? 1 : -1;
+                break;
+            }
+            if (board.getBlankCount() == 0) {
+                result = 0;
+                break;
+            }
+            mark = mark == Mark.X ? Mark.O : Mark.X;
+        }
+        float lambda = (float) options.getLambda();
+        float rate = (float) options.getLearningRate();
+        float target = result;
+        for (int move = moves - 1; move >= 0; move--) {
+            float value = NTupleNetwork.value(network.sum(afterstates[move]));
+            network.update(afterstates[move], value, target, rate);
+            target = (1 - lambda) * value + lambda * target;
+        }
+    }
+
+    /**
+     * Plays the trained network against another player, each side playing X in half the games,
+     * and prints the results.
+     *
+     * @param opponent The opposing player.
+     * @param name     The name of the opposing player.
+     */
+
+    private void evaluate(Player opponent, String name) {
+        Player player = new NTuplePlayer(network);
+        Renderer renderer = new VoidRenderer();
+        Game playerAsX = new Game(player, opponent, size, winStreak, renderer);
+        Game playerAsO = new Game(playerAsX);
+        TournamentStatistics results = new TournamentStatistics();
+        for (int round = 0; round < EVALUATION_GAMES; round++) {
+            boolean playerIsX = round % 2 == 0;
+            Game game = playerIsX ? playerAsX : playerAsO;
+            game.reset();
+            results.addRound(playerIsX, TournamentStatistics.resultOf(game.run(), playerIsX),
+                    game.getMoveCount());
+        }
+        System.out.printf(Locale.ROOT, EVALUATION_FORMAT, name,
+                results.getCount(TournamentStatistics.PLAYER1_WIN),
+                results.getCount(TournamentStatistics.PLAYER2_WIN),
+                results.getCount(TournamentStatistics.TIE));
+    }
+
+    /**
+     * The main method for training a network. It accepts the number of self-play games, the
+     * board size and the win streak, optionally followed by name=value options such as
+     * workers=8, rate=0.1, lambda=0.5, epsilon=0.1, seed=1 or networks=dir.
+     *
+     * @param args Command-line arguments.
+     * @throws IOException If the network file cannot be read or written.
+     */
+
+    public static void main(String[] args) throws IOException {
+        long games = Long.parseLong(args[0]);
+        int size = Integer.parseInt(args[1]);
+        int winStreak = Integer.parseInt(args[2]);
+        TournamentOptions options = TournamentOptions.parse(args, OPTIONS_INDEX);
+        if (options == null) {
+            System.out.println(Constants.UNKNOWN_OPTION);
+            return;
+        }
+        if (winStreak < 2 || winStreak > size) {
+            winStreak = size;
+        }
+        new NTupleTrainer(games, size, winStreak, options).train();
+    }
+}
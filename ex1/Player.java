@@ -10,4 +10,36 @@ public interface Player {
      * @param mark  The mark (X or O) associated with the player.
      */
     void playTurn(Board board, Mark mark);
+
+    /**
+     * Plays a turn on the board within a time budget. Players that think for a while should
+     * override it and return their best move found before the deadline; the default ignores the
+     * deadline, which suits players that move at once.
+     *
+     * @param board         The Tic Tac Toe board on which the move is to be made.
+     * @param mark          The mark (X or O) associated with the player.
+     * @param deadlineNanos The System.nanoTime value by which the move has to be made.
+     */
+    default void playTurn(Board board, Mark mark, long deadlineNanos) {
+        playTurn(board, mark);
+    }
+
+    /**
+     * Starts thinking on the opponent's time, right after the player's own move. The board is
+     * the live game board, which the opponent is about to change, so a player that ponders has
+     * to copy it before returning. The default does nothing.
+     *
+     * @param board The Tic Tac Toe board after the player's move.
+     * @param mark  The mark (X or O) associated with the player.
+     */
+    default void startPondering(Board board, Mark mark) {
+    }
+
+    /**
+     * Stops thinking on the opponent's time, and returns only once the player has stopped.
+     * It is called before every turn of the player and at the end of the game, whether or not
+     * the player is pondering. The default does nothing.
+     */
+    default void stopPondering() {
+    }
 }
\ No newline at end of file
@@ -10,19 +10,53 @@ public class PlayerFactory {
     private final static String WHATEVER_PLAYER = "whatever";
     private final static String CLEVER_PLAYER = "clever";
     private final static String GENIUS_PLAYER = "genius";
+    private final static String SEARCH_PLAYER = "search";
+    private final static String MCTS_PLAYER = "mcts";
+    private final static String PERFECT_PLAYER = "perfect";
+    private final static String NTUPLE_PLAYER = "ntuple";
+    private final static String PROOF_PLAYER = "proof";
+
+    private final static String[] COMPUTER_PLAYERS = {WHATEVER_PLAYER, CLEVER_PLAYER,
+            GENIUS_PLAYER, SEARCH_PLAYER, MCTS_PLAYER, PERFECT_PLAYER,
+            NTUPLE_PLAYER, PROOF_PLAYER};
+
+    private final TournamentOptions options;
 
     /**
-     * Constructs a PlayerFactory.
+     * Constructs a PlayerFactory building engine players with their default settings.
      */
 
     public PlayerFactory(){
+        this(new TournamentOptions());
+    }
+
+    /**
+     * Constructs a PlayerFactory building engine players with the given settings.
+     *
+     * @param options The tournament options holding the engine settings.
+     */
+
+    public PlayerFactory(TournamentOptions options){
+        this.options = options;
+    }
+
+
+    /**
+     * Retrieves the types of all the players that do not need a human at the keyboard.
+     *
+     * @return The player type strings of the computer players.
+     */
+
+    public String[] getComputerPlayerTypes() {
+        return COMPUTER_PLAYERS.clone();
     }
 
 
     /**
      * Builds and returns a player instance based on the specified player type.
      *
-     * @param type The player type string (e.g., "human", "whatever", "clever", "genius").
+     * @param type The player type string (e.g., "human", "whatever", "clever", "genius", "search",
+     *             "mcts", "perfect", "ntuple", "proof").
      * @return An instance of the specified player type, or null if the type is not recognized.
      */
 
@@ -43,6 +77,27 @@ public class PlayerFactory {
             case GENIUS_PLAYER -> {
                 return new GeniusPlayer();
             }
+            case SEARCH_PLAYER -> {
+                return new SearchPlayer(options.getSearchDepth(), options.getSearchNodes(),
+                        options.isPonderEnabled(), options.getSearchThreads());
+            }
+            case MCTS_PLAYER -> {
+                return new MctsPlayer(options.getMoveTimeMillis(), options.getEngineThreads());
+            }
+            case PERFECT_PLAYER -> {
+                return new TablebasePlayer(options.getTablebaseDirectory(),
+                        new SearchPlayer(options.getSearchDepth(), options.getSearchNodes(),
+                                options.isPonderEnabled(), options.getSearchThreads()));
+            }
+            case NTUPLE_PLAYER -> {
+                return new NTuplePlayer(options.getNetworkDirectory());
+            }
+            case PROOF_PLAYER -> {
+                return new ProofNumberPlayer(options.getProofNodes(),
+                        options.getProofMemoryMegabytes(),
+                        new SearchPlayer(options.getSearchDepth(), options.getSearchNodes(),
+                                options.isPonderEnabled(), options.getSearchThreads()));
+            }
         }
         return null;
 
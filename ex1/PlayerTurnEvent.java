@@ -0,0 +1,30 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The PlayerTurnEvent class is a Java Flight Recorder event spanning a single player turn.
+ * It is only committed when a recording has the event enabled, so it costs next to nothing when
+ * no recording runs.
+ */
+
+@Name("tictactoe.PlayerTurn")
+@Label("Player Turn")
+@Category("Tic Tac Toe")
+@Description("A call to Player.playTurn")
+public class PlayerTurnEvent extends Event {
+
+    @Label("Player Type")
+    String playerType;
+
+    @Label("Mark")
+    String mark;
+
+    @Label("Board Size")
+    int boardSize;
+
+    @Label("Move Number")
+    int moveNumber;
+}
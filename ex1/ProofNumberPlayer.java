@@ -0,0 +1,117 @@
+/**
+ * The ProofNumberPlayer class implements the Player interface with a proof-number search for a
+ * win by threats. Every turn it first tries to prove a win from the position, within a node
+ * budget, and plays the winning move at once when it finds one. Otherwise, a fallback player
+ * makes the move. The proof table is kept from turn to turn, so a win proven once is proven
+ * again almost for free on the following turns.
+ * In a timed game, the proof search may spend at most half of the time left for the move.
+ */
+
+public class ProofNumberPlayer implements Player {
+
+    private final static long BYTES_PER_MEGABYTE = 1 << 20;
+
+    private final long nodeBudget;
+
+    private final int memoryMegabytes;
+
+    private final Player fallback;
+
+    private ProofNumberSearch search;
+
+    /**
+     * Constructs a ProofNumberPlayer.
+     *
+     * @param nodeBudget      The maximal number of nodes to expand for a single move.
+     * @param memoryMegabytes The memory the proof table may take, in megabytes.
+     * @param fallback        The player moving when no win is proven.
+     */
+    public ProofNumberPlayer(long nodeBudget, int memoryMegabytes, Player fallback) {
+        this.nodeBudget = nodeBudget;
+        this.memoryMegabytes = memoryMegabytes;
+        this.fallback = fallback;
+    }
+
+    /**
+     * Plays a turn on the board: the winning move if a win is proven, or the fallback player's
+     * move.
+     *
+     * @param board The board on which the move is to be made.
+     * @param mark  The mark (X or O) associated with the player.
+     */
+
+    @Override
+    public void playTurn(Board board, Mark mark) {
+        if (!playProvenWin(board, mark, Long.MAX_VALUE)) {
+            fallback.playTurn(board, mark);
+        }
+    }
+
+    /**
+     * Plays a turn on the board within a time budget: the winning move if a win is proven in
+     * half of the time left, or the fallback player's move.
+     *
+     * @param board         The board on which the move is to be made.
+     * @param mark          The mark (X or O) associated with the player.
+     * @param deadlineNanos The System.nanoTime value by which the move has to be made, or
+     *                      Long.MAX_VALUE if the move is not timed.
+     */
+
+    @Override
+    public void playTurn(Board board, Mark mark, long deadlineNanos) {
+        long proofDeadline = deadlineNanos;
+        if (deadlineNanos != Long.MAX_VALUE) {
+            long now = System.nanoTime();
+            proofDeadline = now + Math.max(0, deadlineNanos - now) / 2;
+        }
+        if (!playProvenWin(board, mark, proofDeadline)) {
+            fallback.playTurn(board, mark, deadlineNanos);
+        }
+    }
+
+    /**
+     * Lets the fallback player start pondering.
+     *
+     * @param board The board after the player's move.
+     * @param mark  The mark (X or O) associated with the player.
+     */
+
+    @Override
+    public void startPondering(Board board, Mark mark) {
+        fallback.startPondering(board, mark);
+    }
+
+    /**
+     * Lets the fallback player stop pondering.
+     */
+
+    @Override
+    public void stopPondering() {
+        fallback.stopPondering();
+    }
+
+    /**
+     * Searches for a win by threats and plays its first move if one is proven.
+     *
+     * @param board         The board on which the move is to be made.
+     * @param mark          The mark (X or O) associated with the player.
+     * @param deadlineNanos The System.nanoTime value by which to give up, or Long.MAX_VALUE.
+     * @return True if a winning move was played.
+     */
+
+    private boolean playProvenWin(Board board, Mark mark, long deadlineNanos) {
+        fallback.stopPondering();
+        int size = board.getSize();
+        if (search == null || search.getSize() != size
+                || search.getWinStreak() != board.getWinStreak()) {
+            search = new ProofNumberSearch(size, board.getWinStreak(),
+                    memoryMegabytes * BYTES_PER_MEGABYTE);
+        }
+        if (search.solve(board, mark, nodeBudget, deadlineNanos) != ProofNumberSearch.PROVEN) {
+            return false;
+        }
+        int cell = search.getBestMove();
+        board.putMark(mark, cell / size, cell % size);
+        return true;
+    }
+}
@@ -0,0 +1,639 @@
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The ProofNumberSearch class decides whether the player to move in a position can force a win,
+ * with depth-first proof-number search (df-pn). Every node carries a proof number, the least
+ * number of leaves that still have to be solved to prove that its player to move wins, and a
+ * disproof number, the least number to prove that it does not. The search always expands the
+ * most proving node, staying in a subtree while its numbers are below the thresholds its parent
+ * gives it, and keeps the numbers of the expanded positions in a bounded ProofTable.
+ * The attacker, the player to move at the root, is only given threat moves: moves that make a
+ * four, a window one mark short of a streak, or a three, a window two marks short. The
+ * defender is only given the moves that can stop the threats: blocking a four, and against a
+ * three, the cells of every conversion of it into two fours, or making a four of their own.
+ * Any other defender move loses to the conversion, so a proof stays sound; a disproof only
+ * means that the attacker has no win by threats.
+ */
+
+public class ProofNumberSearch {
+
+    /**
+     * The search ran out of nodes or time before solving the position.
+     */
+    public static final int UNKNOWN = 0;
+
+    /**
+     * The player to move wins by threats.
+     */
+    public static final int PROVEN = 1;
+
+    /**
+     * The player to move has no win by threats.
+     */
+    public static final int DISPROVEN = 2;
+
+    /**
+     * The number of nodes a single solve may expand when no budget is configured.
+     */
+    public static final long DEFAULT_NODE_BUDGET = 100_000;
+
+    /**
+     * The memory of the proof table in megabytes when none is configured.
+     */
+    public static final int DEFAULT_MEMORY_MEGABYTES = 16;
+
+    private static final int INFINITY = Integer.MAX_VALUE / 2;
+
+    private static final int WIN_NOW = -1;
+
+    private static final int LOSE_NOW = -2;
+
+    private static final int NO_MOVE = -1;
+
+    private static final int THRESHOLD_SLACK_SHIFT = 2;
+
+    private static final int OPPONENT_SUM = Mark.X.ordinal() + Mark.O.ordinal();
+
+    private static final long O_ATTACKS_KEY = 0xA24BAED4963EE407L;
+
+    private static final long CLOCK_CHECK_MASK = 1023;
+
+    private static final long BYTES_PER_MEGABYTE = 1 << 20;
+
+    private static final int OPTIONS_INDEX = 3;
+
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+
+    private static final Mark[] MARKS = Mark.values();
+
+    private final int size;
+
+    private final int winStreak;
+
+    private final int windowCount;
+
+    private final int[] windowCells;
+
+    private final int[] cellStarts;
+
+    private final int[] cellWindows;
+
+    private final int[][] counts;
+
+    private final byte[] cells;
+
+    private final ProofTable table;
+
+    private final int[][] moveBuffers;
+
+    private final int[][] proofBuffers;
+
+    private final int[][] disproofBuffers;
+
+    private final int[] conversions;
+
+    private final int[] cellStamps;
+
+    private final int[] partners;
+
+    private final int[] partnerStamps;
+
+    private final int[] hits;
+
+    private final int[] hitStamps;
+
+    private int stamp;
+
+    private int blankCount;
+
+    private long hash;
+
+    private int attacker;
+
+    private long nodes;
+
+    private long nodeBudget;
+
+    private boolean timed;
+
+    private long deadline;
+
+    private boolean aborted;
+
+    private int lastProof;
+
+    private int lastDisproof;
+
+    private int bestMove;
+
+    /**
+     * Constructs a ProofNumberSearch for a board.
+     *
+     * @param size        The size of the board.
+     * @param winStreak   The streak length required for a win.
+     * @param memoryBytes The memory the proof table may take, in bytes.
+     */
+    public ProofNumberSearch(int size, int winStreak, long memoryBytes) {
+        this.size = size;
+        this.winStreak = winStreak;
+        int cellCount = size * size;
+        this.windowCells = buildWindows();
+        this.windowCount = windowCells.length / winStreak;
+        this.cellStarts = new int[cellCount + 1];
+        for (int cell : windowCells) {
+            cellStarts[cell + 1]++;
+        }
+        for (int cell = 0; cell < cellCount; cell++) {
+            cellStarts[cell + 1] += cellStarts[cell];
+        }
+        this.cellWindows = new int[windowCells.length];
+        int[] filled = cellStarts.clone();
+        for (int window = 0; window < windowCount; window++) {
+            for (int i = 0; i < winStreak; i++) {
+                cellWindows[filled[windowCells[window * winStreak + i]]++] = window;
+            }
+        }
+        this.counts = new int[MARKS.length][windowCount];
+        this.cells = new byte[cellCount];
+        this.table = new ProofTable(memoryBytes);
+        this.moveBuffers = new int[cellCount + 1][cellCount];
+        this.proofBuffers = new int[cellCount + 1][cellCount];
+        this.disproofBuffers = new int[cellCount + 1][cellCount];
+        this.conversions = new int[cellCount];
+        this.cellStamps = new int[cellCount];
+        this.partners = new int[cellCount];
+        this.partnerStamps = new int[cellCount];
+        this.hits = new int[cellCount];
+        this.hitStamps = new int[cellCount];
+    }
+
+    /**
+     * Retrieves the size of the board.
+     *
+     * @return The size of the square board.
+     */
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Retrieves the streak length required for a win.
+     *
+     * @return The win streak.
+     */
+
+    public int getWinStreak() {
+        return winStreak;
+    }
+
+    /**
+     * Retrieves the proof table, which keeps its entries from one solve to the next.
+     *
+     * @return The proof table.
+     */
+
+    public ProofTable getTable() {
+        return table;
+    }
+
+    /**
+     * Retrieves the number of nodes the last solve expanded.
+     *
+     * @return The number of nodes.
+     */
+
+    public long getNodeCount() {
+        return nodes;
+    }
+
+    /**
+     * Retrieves the winning move found by the last solve.
+     *
+     * @return The index of the cell, row * size + col, or -1 if the position was not proven.
+     */
+
+    public int getBestMove() {
+        return bestMove;
+    }
+
+    /**
+     * Decides whether a player wins by threats from a position on the board. The board is only
+     * read, the search plays its moves on a copy of its own.
+     *
+     * @param board         The board, of the size of this search.
+     * @param mark          The mark of the player to move, the attacker.
+     * @param nodeBudget    The maximal number of nodes to expand.
+     * @param deadlineNanos The System.nanoTime value by which to give up, or Long.MAX_VALUE if
+     *                      the search is not timed.
+     * @return PROVEN, DISPROVEN or UNKNOWN.
+     */
+
+    public int solve(Board board, Mark mark, long nodeBudget, long deadlineNanos) {
+        load(board);
+        attacker = mark.ordinal();
+        if (attacker == Mark.O.ordinal()) {
+            hash ^= O_ATTACKS_KEY;
+        }
+        this.nodeBudget = nodeBudget;
+        timed = deadlineNanos != Long.MAX_VALUE;
+        deadline = deadlineNanos;
+        nodes = 0;
+        aborted = false;
+        bestMove = NO_MOVE;
+        search(attacker, 0, INFINITY, INFINITY);
+        if (lastProof == 0) {
+            return PROVEN;
+        }
+        bestMove = NO_MOVE;
+        return lastDisproof == 0 ? DISPROVEN : UNKNOWN;
+    }
+
+    /**
+     * Copies the marks of a board and counts the marks of every window.
+     *
+     * @param board The board to copy.
+     */
+
+    private void load(Board board) {
+        for (int[] sideCounts : counts) {
+            Arrays.fill(sideCounts, 0);
+        }
+        blankCount = cells.length;
+        hash = 0;
+        for (int cell = 0; cell < cells.length; cell++) {
+            cells[cell] = (byte) Mark.BLANK.ordinal();
+            Mark mark = board.getMark(cell / size, cell % size);
+            if (mark != Mark.BLANK) {
+                play(cell, mark.ordinal());
+            }
+        }
+    }
+
+    /**
+     * Searches a node until its proof number or disproof number reaches its threshold, and
+     * leaves the numbers of the node in lastProof and lastDisproof, from the point of view of
+     * its player to move. A child's proof number is its parent's disproof number and the other
+     * way around, so the proof number of a node is the least disproof number of its children
+     * and its disproof number is the sum of their proof numbers.
+     *
+     * @param side              The ordinal of the mark to move.
+     * @param ply               The distance from the root.
+     * @param proofThreshold    The proof number at which to return.
+     * @param disproofThreshold The disproof number at which to return.
+     */
+
+    private void search(int side, int ply, int proofThreshold, int disproofThreshold) {
+        long startNodes = nodes;
+        if (++nodes > nodeBudget || (nodes & CLOCK_CHECK_MASK) == 0 && timed
+                && System.nanoTime() - deadline > 0) {
+            aborted = true;
+        }
+        int moveCount = expand(side, ply);
+        if (moveCount == WIN_NOW || moveCount == LOSE_NOW) {
+            lastProof = moveCount == WIN_NOW ? 0 : INFINITY;
+            lastDisproof = moveCount == WIN_NOW ? INFINITY : 0;
+            table.store(hash, lastProof, lastDisproof, 1);
+            return;
+        }
+        int[] moves = moveBuffers[ply];
+        int[] childProofs = proofBuffers[ply];
+        int[] childDisproofs = disproofBuffers[ply];
+        for (int i = 0; i < moveCount; i++) {
+            int slot = table.find(hash ^ Zobrist.key(moves[i], side));
+            childProofs[i] = slot == ProofTable.NO_SLOT ? 1 : table.getProof(slot);
+            childDisproofs[i] = slot == ProofTable.NO_SLOT ? 1 : table.getDisproof(slot);
+        }
+        int proof;
+        int disproof;
+        while (true) {
+            proof = INFINITY;
+            disproof = 0;
+            int best = 0;
+            int secondProof = INFINITY;
+            for (int i = 0; i < moveCount; i++) {
+                disproof = Math.min(INFINITY, disproof + childProofs[i]);
+                if (childDisproofs[i] < proof) {
+                    secondProof = proof;
+                    proof = childDisproofs[i];
+                    best = i;
+                } else if (childDisproofs[i] < secondProof) {
+                    secondProof = childDisproofs[i];
+                }
+            }
+            if (ply == 0 && proof == 0) {
+                bestMove = moves[best];
+            }
+            if (proof >= proofThreshold || disproof >= disproofThreshold || aborted) {
+                break;
+            }
+            int childProofThreshold = disproofThreshold - disproof + childProofs[best];
+            int childDisproofThreshold = Math.min(proofThreshold,
+                    secondProof + (secondProof >> THRESHOLD_SLACK_SHIFT) + 1);
+            play(moves[best], side);
+            search(OPPONENT_SUM - side, ply + 1, childProofThreshold, childDisproofThreshold);
+            undo(moves[best], side);
+            childProofs[best] = lastProof;
+            childDisproofs[best] = lastDisproof;
+        }
+        table.store(hash, proof, disproof, (int) Math.min(Integer.MAX_VALUE, nodes - startNodes));
+        lastProof = proof;
+        lastDisproof = disproof;
+    }
+
+    /**
+     * Generates the moves of a node into the move buffer of its ply, or finds that the node is
+     * decided without a move.
+     *
+     * @param side The ordinal of the mark to move.
+     * @param ply  The distance from the root.
+     * @return The number of moves, or WIN_NOW or LOSE_NOW for the player to move.
+     */
+
+    private int expand(int side, int ply) {
+        int other = OPPONENT_SUM - side;
+        int[] moves = moveBuffers[ply];
+        stamp++;
+        if (addBlanks(side, winStreak - 1, moves, 0) > 0) {
+            if (ply == 0) {
+                bestMove = moves[0];
+            }
+            return WIN_NOW;
+        }
+        if (blankCount == 0) {
+            return side == attacker ? LOSE_NOW : WIN_NOW;
+        }
+        stamp++;
+        int threats = addBlanks(other, winStreak - 1, moves, 0);
+        if (threats > 1) {
+            return LOSE_NOW;
+        }
+        if (threats == 1) {
+            return 1;
+        }
+        return side == attacker ? expandAttacker(moves) : expandDefender(moves);
+    }
+
+    /**
+     * Generates the threat moves of the attacker, fours first.
+     *
+     * @param moves The buffer to fill.
+     * @return The number of moves, or LOSE_NOW if the attacker has no threat.
+     */
+
+    private int expandAttacker(int[] moves) {
+        stamp++;
+        int count = addBlanks(attacker, winStreak - 2, moves, 0);
+        count = addBlanks(attacker, winStreak - 3, moves, count);
+        return count == 0 ? LOSE_NOW : count;
+    }
+
+    /**
+     * Generates the moves of the defender against a three. A conversion is a blank cell that
+     * would give the attacker two fours with different winning cells. A defender move outside
+     * the windows of a conversion loses to it unless it makes a four, so the defender is given
+     * the cells shared by every conversion and its own fours.
+     *
+     * @param moves The buffer to fill.
+     * @return The number of moves, WIN_NOW if the attacker made no threat, or LOSE_NOW if no
+     * move stops it.
+     */
+
+    private int expandDefender(int[] moves) {
+        int defender = OPPONENT_SUM - attacker;
+        int[] attackerCounts = counts[attacker];
+        int[] defenderCounts = counts[defender];
+        stamp++;
+        int conversionCount = 0;
+        for (int window = 0; window < windowCount; window++) {
+            if (attackerCounts[window] != winStreak - 2 || defenderCounts[window] != 0) {
+                continue;
+            }
+            int first = NO_MOVE;
+            int second = NO_MOVE;
+            for (int i = window * winStreak; i < (window + 1) * winStreak; i++) {
+                if (cells[windowCells[i]] == Mark.BLANK.ordinal()) {
+                    second = first;
+                    first = windowCells[i];
+                }
+            }
+            conversionCount = addPartner(first, second, conversionCount);
+            conversionCount = addPartner(second, first, conversionCount);
+        }
+        if (conversionCount == 0) {
+            return WIN_NOW;
+        }
+        int hitStamp = stamp;
+        for (int c = 0; c < conversionCount; c++) {
+            stamp++;
+            int conversion = conversions[c];
+            for (int i = cellStarts[conversion]; i < cellStarts[conversion + 1]; i++) {
+                int window = cellWindows[i];
+                if (attackerCounts[window] != winStreak - 2 || defenderCounts[window] != 0) {
+                    continue;
+                }
+                for (int j = window * winStreak; j < (window + 1) * winStreak; j++) {
+                    int cell = windowCells[j];
+                    if (cells[cell] != Mark.BLANK.ordinal() || cellStamps[cell] == stamp) {
+                        continue;
+                    }
+                    cellStamps[cell] = stamp;
+                    if (hitStamps[cell] != hitStamp) {
+                        hitStamps[cell] = hitStamp;
+                        hits[cell] = 0;
+                    }
+                    hits[cell]++;
+                }
+            }
+        }
+        stamp++;
+        int count = 0;
+        int conversion = conversions[0];
+        for (int i = cellStarts[conversion]; i < cellStarts[conversion + 1]; i++) {
+            int window = cellWindows[i];
+            for (int j = window * winStreak; j < (window + 1) * winStreak; j++) {
+                int cell = windowCells[j];
+                if (hitStamps[cell] == hitStamp && hits[cell] == conversionCount
+                        && cellStamps[cell] != stamp) {
+                    cellStamps[cell] = stamp;
+                    moves[count++] = cell;
+                }
+            }
+        }
+        count = addBlanks(defender, winStreak - 2, moves, count);
+        return count == 0 ? LOSE_NOW : count;
+    }
+
+    /**
+     * Notes that marking a blank cell would make a four winning at a partner cell, and adds the
+     * cell to the conversions once it has two different partners.
+     *
+     * @param cell            The blank cell.
+     * @param partner         The cell the four would win at.
+     * @param conversionCount The number of conversions found so far.
+     * @return The number of conversions found, with the cell if it became one.
+     */
+
+    private int addPartner(int cell, int partner, int conversionCount) {
+        if (partnerStamps[cell] != stamp) {
+            partnerStamps[cell] = stamp;
+            partners[cell] = partner;
+        } else if (partners[cell] != partner && partners[cell] != NO_MOVE) {
+            partners[cell] = NO_MOVE;
+            conversions[conversionCount++] = cell;
+        }
+        return conversionCount;
+    }
+
+    /**
+     * Adds the blank cells of the windows holding a given number of marks of a side and none of
+     * its opponent to a buffer, skipping the cells added since the stamp was last advanced.
+     *
+     * @param side  The ordinal of the mark.
+     * @param marks The number of marks of the side in the windows.
+     * @param out   The buffer to add the cells to.
+     * @param count The number of cells in the buffer.
+     * @return The number of cells in the buffer after adding.
+     */
+
+    private int addBlanks(int side, int marks, int[] out, int count) {
+        if (marks < 0) {
+            return count;
+        }
+        int[] sideCounts = counts[side];
+        int[] otherCounts = counts[OPPONENT_SUM - side];
+        for (int window = 0; window < windowCount; window++) {
+            if (sideCounts[window] != marks || otherCounts[window] != 0) {
+                continue;
+            }
+            for (int i = window * winStreak; i < (window + 1) * winStreak; i++) {
+                int cell = windowCells[i];
+                if (cells[cell] == Mark.BLANK.ordinal() && cellStamps[cell] != stamp) {
+                    cellStamps[cell] = stamp;
+                    out[count++] = cell;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Places a mark on a blank cell.
+     *
+     * @param cell The index of the cell.
+     * @param side The ordinal of the mark.
+     */
+
+    private void play(int cell, int side) {
+        cells[cell] = (byte) side;
+        blankCount--;
+        hash ^= Zobrist.key(cell, side);
+        int[] sideCounts = counts[side];
+        for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; i++) {
+            sideCounts[cellWindows[i]]++;
+        }
+    }
+
+    /**
+     * Removes a mark placed with play.
+     *
+     * @param cell The index of the cell.
+     * @param side The ordinal of the mark.
+     */
+
+    private void undo(int cell, int side) {
+        cells[cell] = (byte) Mark.BLANK.ordinal();
+        blankCount++;
+        hash ^= Zobrist.key(cell, side);
+        int[] sideCounts = counts[side];
+        for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; i++) {
+            sideCounts[cellWindows[i]]--;
+        }
+    }
+
+    /**
+     * Lists the cells of every window of winStreak cells along the rows, the columns, the
+     * diagonals and the anti-diagonals.
+     *
+     * @return The cells of window w at indices w * winStreak to (w + 1) * winStreak - 1.
+     */
+
+    private int[] buildWindows() {
+        int[] windows = new int[DIRECTIONS.length * size * size * winStreak];
+        int count = 0;
+        for (int[] direction : DIRECTIONS) {
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    int lastRow = row + direction[0] * (winStreak - 1);
+                    int lastCol = col + direction[1] * (winStreak - 1);
+                    if (lastRow < 0 || lastRow >= size || lastCol < 0 || lastCol >= size) {
+                        continue;
+                    }
+                    for (int i = 0; i < winStreak; i++) {
+                        windows[count++] = (row + direction[0] * i) * size
+                                + col + direction[1] * i;
+                    }
+                }
+            }
+        }
+        int[] windowCells = new int[count];
+        System.arraycopy(windows, 0, windowCells, 0, count);
+        return windowCells;
+    }
+
+    /**
+     * The main method for analysing a position. It accepts the board size, the win streak and
+     * the moves played so far, X first, as a single argument of "row,col" pairs separated by
+     * spaces ("-" for the empty board), optionally followed by name=value options such as
+     * proofnodes=1000000 or memory=256. A position that is already won is not analysed.
+     *
+     * @param args Command-line arguments.
+     */
+
+    public static void main(String[] args) {
+        int size = Integer.parseInt(args[0]);
+        int winStreak = Integer.parseInt(args[1]);
+        TournamentOptions options = TournamentOptions.parse(args, OPTIONS_INDEX);
+        if (options == null) {
+            System.out.println(Constants.UNKNOWN_OPTION);
+            return;
+        }
+        if (winStreak < 2 || winStreak > size) {
+            winStreak = size;
+        }
+        Board board = new Board(size, winStreak);
+        Mark mark = Mark.X;
+        if (!args[2].equals("-")) {
+            for (String move : args[2].trim().split("\\s+")) {
+                String[] coordinates = move.split(",");
+                if (coordinates.length != 2 || !board.putMark(mark,
+                        Integer.parseInt(coordinates[0]), Integer.parseInt(coordinates[1]))) {
+                    System.out.println(Constants.INVALID_ANALYSIS_MOVE + move);
+                    return;
+                }
+                if (board.completesStreak(board.getLastRow(), board.getLastCol())) {
+                    System.out.println(Constants.FINISHED_ANALYSIS_POSITION + move);
+                    return;
+                }
+                mark = mark == Mark.X ? Mark.O : Mark.X;
+            }
+        }
+        ProofNumberSearch search = new ProofNumberSearch(size, winStreak,
+                options.getProofMemoryMegabytes() * BYTES_PER_MEGABYTE);
+        long startNanos = System.nanoTime();
+        int result = search.solve(board, mark, options.getProofNodes(), Long.MAX_VALUE);
+        long millis = (System.nanoTime() - startNanos) / 1_000_000;
+        System.out.println(mark + Constants.PROOF_SIDE_TO_MOVE + (result == PROVEN
+                ? Constants.PROOF_WIN
+                : result == DISPROVEN ? Constants.PROOF_NO_WIN : Constants.PROOF_UNKNOWN));
+        if (result == PROVEN) {
+            int move = search.getBestMove();
+            System.out.println(Constants.PROOF_WINNING_MOVE + move / size + "," + move % size);
+        }
+        ProofTable table = search.getTable();
+        System.out.printf(Locale.ROOT, "Nodes: %d%nTime: %d ms%nTable: %d of %d entries,"
+                        + " %d replaced%n", search.getNodeCount(), millis, table.getUsed(),
+                table.getCapacity(), table.getReplaced());
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * The ProofTable class is a bounded cache of the proof and disproof numbers of the positions a
+ * ProofNumberSearch has expanded, keyed by their Zobrist hash. Every entry also records the
+ * work spent on it, the number of nodes searched below the position.
+ * Entries are grouped in buckets of two slots. When both slots of a bucket hold other positions,
+ * the one with less work is replaced, so a search that runs out of memory forgets the cheap
+ * subtrees first and keeps the results that took long to find.
+ */
+
+public class ProofTable {
+
+    /**
+     * The number of bytes one entry takes: the key, the two numbers and the work.
+     */
+    public static final int ENTRY_BYTES = Long.BYTES + 3 * Integer.BYTES;
+
+    /**
+     * The value returned by find when the position is not in the table.
+     */
+    public static final int NO_SLOT = -1;
+
+    private static final int MIN_ENTRIES = 2;
+
+    private final long[] keys;
+
+    private final int[] proofs;
+
+    private final int[] disproofs;
+
+    private final int[] works;
+
+    private final int indexMask;
+
+    private int used;
+
+    private long replaced;
+
+    /**
+     * Constructs an empty table taking at most a given amount of memory. The number of entries
+     * is the largest power of two that fits.
+     *
+     * @param memoryBytes The memory the table may take, in bytes.
+     */
+    public ProofTable(long memoryBytes) {
+        long entries = Math.max(MIN_ENTRIES, memoryBytes / ENTRY_BYTES);
+        int capacity = Integer.highestOneBit((int) Math.min(entries, 1 << 30));
+        keys = new long[capacity];
+        proofs = new int[capacity];
+        disproofs = new int[capacity];
+        works = new int[capacity];
+        indexMask = capacity - 2;
+    }
+
+    /**
+     * Finds the slot of a position.
+     *
+     * @param key The Zobrist hash of the position.
+     * @return The index of the slot, or NO_SLOT if the position is not in the table.
+     */
+
+    public int find(long key) {
+        int index = (int) key & indexMask;
+        if (keys[index] == key && works[index] != 0) {
+            return index;
+        }
+        if (keys[index + 1] == key && works[index + 1] != 0) {
+            return index + 1;
+        }
+        return NO_SLOT;
+    }
+
+    /**
+     * Retrieves the proof number stored in a slot.
+     *
+     * @param slot The index of the slot, found with find.
+     * @return The proof number.
+     */
+
+    public int getProof(int slot) {
+        return proofs[slot];
+    }
+
+    /**
+     * Retrieves the disproof number stored in a slot.
+     *
+     * @param slot The index of the slot, found with find.
+     * @return The disproof number.
+     */
+
+    public int getDisproof(int slot) {
+        return disproofs[slot];
+    }
+
+    /**
+     * Stores the numbers of a position, over its own entry if it has one, otherwise in a free
+     * slot of its bucket or over the entry of the bucket with less work.
+     *
+     * @param key      The Zobrist hash of the position.
+     * @param proof    The proof number.
+     * @param disproof The disproof number.
+     * @param work     The number of nodes searched below the position, at least 1.
+     */
+
+    public void store(long key, int proof, int disproof, int work) {
+        int index = find(key);
+        if (index == NO_SLOT) {
+            index = (int) key & indexMask;
+            if (works[index] != 0 && (works[index + 1] == 0 || works[index + 1] < works[index])) {
+                index++;
+            }
+            if (works[index] == 0) {
+                used++;
+            } else {
+                replaced++;
+            }
+        }
+        keys[index] = key;
+        proofs[index] = proof;
+        disproofs[index] = disproof;
+        works[index] = Math.max(work, 1);
+    }
+
+    /**
+     * Retrieves the number of entries the table holds at most.
+     *
+     * @return The number of slots.
+     */
+
+    public int getCapacity() {
+        return keys.length;
+    }
+
+    /**
+     * Retrieves the number of slots holding an entry.
+     *
+     * @return The number of used slots.
+     */
+
+    public int getUsed() {
+        return used;
+    }
+
+    /**
+     * Retrieves the number of entries that were replaced by other positions for lack of room.
+     *
+     * @return The number of replaced entries.
+     */
+
+    public long getReplaced() {
+        return replaced;
+    }
+}
@@ -0,0 +1,230 @@
+/**
+ * The SampleBlock class holds the positions sampled from a batch of self-play games, stored by
+ * column: the X cells and the O cells of every position as bit planes, then the side to move,
+ * the final outcome for the side to move, and the number of moves played before the position.
+ * Blocks are filled by a self-play worker and written by a SampleWriter, and are reused once
+ * written, so the columns are allocated only when a block is created.
+ */
+
+public class SampleBlock {
+
+    /**
+     * The outcome of a position whose side to move went on to win.
+     */
+    public static final byte WIN = 1;
+
+    /**
+     * The outcome of a position whose game ended in a draw.
+     */
+    public static final byte DRAW = 0;
+
+    /**
+     * The outcome of a position whose side to move went on to lose.
+     */
+    public static final byte LOSS = -1;
+
+    private static final int WORD_SHIFT = 6;
+
+    private static final int WORD_MASK = Long.SIZE - 1;
+
+    private final int size;
+
+    private final int wordsPerPlane;
+
+    private final long[] xPlanes;
+
+    private final long[] oPlanes;
+
+    private final byte[] sides;
+
+    private final byte[] outcomes;
+
+    private final short[] plies;
+
+    private long batch;
+
+    private int gameCount;
+
+    private int sampleCount;
+
+    private int gameStart;
+
+    /**
+     * Constructs an empty SampleBlock.
+     *
+     * @param size     The size of the board the games are played on.
+     * @param capacity The largest number of positions the block holds.
+     */
+    public SampleBlock(int size, int capacity) {
+        this.size = size;
+        this.wordsPerPlane = getWordsPerPlane(size);
+        this.xPlanes = new long[capacity * wordsPerPlane];
+        this.oPlanes = new long[capacity * wordsPerPlane];
+        this.sides = new byte[capacity];
+        this.outcomes = new byte[capacity];
+        this.plies = new short[capacity];
+    }
+
+    /**
+     * Computes the number of 64-bit words a bit plane of a board takes.
+     *
+     * @param size The size of the board.
+     * @return The number of words of one plane.
+     */
+
+    public static int getWordsPerPlane(int size) {
+        return (size * size + WORD_MASK) >>> WORD_SHIFT;
+    }
+
+    /**
+     * Empties the block for a new batch of games.
+     *
+     * @param batch The index of the batch.
+     */
+
+    public void reset(long batch) {
+        this.batch = batch;
+        gameCount = 0;
+        sampleCount = 0;
+        gameStart = 0;
+    }
+
+    /**
+     * Adds a position of the current game. Its outcome is set when the game ends.
+     *
+     * @param board The board holding the position.
+     * @param side  The mark (X or O) of the side to move.
+     */
+
+    public void addSample(Board board, Mark side) {
+        int base = sampleCount * wordsPerPlane;
+        for (int word = 0; word < wordsPerPlane; word++) {
+            xPlanes[base + word] = 0;
+            oPlanes[base + word] = 0;
+        }
+        for (int cell = 0; cell < size * size; cell++) {
+            Mark mark = board.getMark(cell / size, cell % size);
+            if (mark == Mark.X) {
+                xPlanes[base + (cell >>> WORD_SHIFT)] |= 1L << cell;
+            } else if (mark == Mark.O) {
+                oPlanes[base + (cell >>> WORD_SHIFT)] |= 1L << cell;
+            }
+        }
+        sides[sampleCount] = (byte) side.ordinal();
+        plies[sampleCount] = (short) board.getMoveCount();
+        sampleCount++;
+    }
+
+    /**
+     * Ends the current game, setting the outcome of its positions.
+     *
+     * @param winner The mark of the winner ('X' or 'O') or 'BLANK' in case of a draw.
+     */
+
+    public void endGame(Mark winner) {
+        for (int sample = gameStart; sample < sampleCount; sample++) {
+            if (winner == Mark.BLANK) {
+                outcomes[sample] = DRAW;
+            } else {
+                outcomes[sample] = sides[sample] == winner.ordinal() ? WIN : LOSS;
+            }
+        }
+        gameStart = sampleCount;
+        gameCount++;
+    }
+
+    /**
+     * Retrieves the index of the batch of games in the block.
+     *
+     * @return The batch index.
+     */
+
+    public long getBatch() {
+        return batch;
+    }
+
+    /**
+     * Retrieves the number of games in the block.
+     *
+     * @return The number of ended games.
+     */
+
+    public int getGameCount() {
+        return gameCount;
+    }
+
+    /**
+     * Retrieves the number of positions in the block.
+     *
+     * @return The number of samples.
+     */
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * Retrieves the number of 64-bit words of one bit plane.
+     *
+     * @return The words per plane.
+     */
+
+    public int getWordsPerPlane() {
+        return wordsPerPlane;
+    }
+
+    /**
+     * Retrieves a word of the X cells column.
+     *
+     * @param index The index of the word, sample * getWordsPerPlane() + word.
+     * @return The bits of the X cells, bit i of word w standing for cell 64 * w + i.
+     */
+
+    public long getXPlane(int index) {
+        return xPlanes[index];
+    }
+
+    /**
+     * Retrieves a word of the O cells column.
+     *
+     * @param index The index of the word, sample * getWordsPerPlane() + word.
+     * @return The bits of the O cells, bit i of word w standing for cell 64 * w + i.
+     */
+
+    public long getOPlane(int index) {
+        return oPlanes[index];
+    }
+
+    /**
+     * Retrieves the side to move of a position.
+     *
+     * @param sample The index of the position.
+     * @return The ordinal of the mark to move.
+     */
+
+    public byte getSide(int sample) {
+        return sides[sample];
+    }
+
+    /**
+     * Retrieves the outcome of a position.
+     *
+     * @param sample The index of the position.
+     * @return WIN, DRAW or LOSS, for the side to move.
+     */
+
+    public byte getOutcome(int sample) {
+        return outcomes[sample];
+    }
+
+    /**
+     * Retrieves the number of moves played before a position.
+     *
+     * @param sample The index of the position.
+     * @return The ply of the position.
+     */
+
+    public short getPly(int sample) {
+        return plies[sample];
+    }
+}
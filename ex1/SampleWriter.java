@@ -0,0 +1,361 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * The SampleWriter class writes the blocks of self-play positions to a binary sample file on a
+ * single thread of its own. Workers take an empty SampleBlock from a bounded pool, fill it and
+ * hand it over, and the writer thread returns it to the pool once it is on disk, so the workers
+ * only wait when the disk falls a whole pool behind.
+ * The file starts with a header: the magic number, the version byte, the board size, the win
+ * streak, the number of games, the seed, the sampling rate, the number of random opening moves
+ * and the number of games per batch. Every block follows as its magic number, its batch index,
+ * its number of games and of positions, and then its columns, all in big-endian order: the X
+ * planes and the O planes as longs, the sides to move and the outcomes as bytes, and the plies
+ * as shorts.
+ * Blocks are written in the order they are finished, so a file is resumed by scanning which
+ * batches it already holds.
+ */
+
+public class SampleWriter {
+
+    /**
+     * The magic number at the start of every sample file, "TTTS" in ASCII.
+     */
+    public static final int MAGIC = 0x54545453;
+
+    /**
+     * The magic number at the start of every block, "BLCK" in ASCII.
+     */
+    public static final int BLOCK_MAGIC = 0x424C434B;
+
+    /**
+     * The version of the sample file format.
+     */
+    public static final byte VERSION = 1;
+
+    private static final int HEADER_BYTES = Integer.BYTES + 1 + 2 * Integer.BYTES
+            + 2 * Long.BYTES + Double.BYTES + 2 * Integer.BYTES;
+
+    private static final int BLOCK_HEADER_BYTES = Integer.BYTES + Long.BYTES + 2 * Integer.BYTES;
+
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    private static final long END_OF_BLOCKS = -1;
+
+    private final FileChannel channel;
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+
+    private final BlockingQueue<SampleBlock> emptyBlocks;
+
+    private final BlockingQueue<SampleBlock> fullBlocks;
+
+    private final SampleBlock endBlock;
+
+    private final BitSet writtenBatches;
+
+    private final Thread thread;
+
+    private long sampleCount;
+
+    private long gameCount;
+
+    private volatile RuntimeException failure;
+
+    /**
+     * Opens a sample file for writing, creating it with its header if it does not exist or is
+     * empty. An existing file must have the same settings in its header. A block cut short by
+     * an earlier run that stopped is removed, and the batches of the complete blocks are noted
+     * so they are not played again.
+     *
+     * @param path        The path of the sample file.
+     * @param size        The size of the board.
+     * @param winStreak   The streak length required for a win.
+     * @param games       The number of games of the run.
+     * @param seed        The seed of the games.
+     * @param sampleRate  The probability of sampling a position.
+     * @param opening     The number of random opening moves.
+     * @param batchGames  The number of games per batch.
+     * @param blocks      The number of blocks in the pool, at least 1.
+     * @param capacity    The largest number of positions a block holds.
+     * @throws IOException If the file cannot be opened, or has different settings.
+     */
+    public SampleWriter(String path, int size, int winStreak, long games, long seed,
+                        double sampleRate, int opening, int batchGames, int blocks,
+                        int capacity)
+            throws IOException {
+        channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).put(VERSION).putInt(size).putInt(winStreak).putLong(games)
+                    .putLong(seed)
+                    .putDouble(sampleRate).putInt(opening).putInt(batchGames);
+            header.flip();
+            writtenBatches = new BitSet();
+            if (channel.size() == 0) {
+                channel.write(header, 0);
+            } else {
+                ByteBuffer existing = ByteBuffer.allocate(HEADER_BYTES);
+                readFully(existing, 0);
+                existing.flip();
+                if (!existing.equals(header)) {
+                    throw new IOException("Sample file settings differ: " + path);
+                }
+                channel.truncate(scanBlocks(SampleBlock.getWordsPerPlane(size)));
+            }
+            channel.position(channel.size());
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        emptyBlocks = new ArrayBlockingQueue<>(blocks);
+        fullBlocks = new ArrayBlockingQueue<>(blocks + 1);
+        for (int block = 0; block < blocks; block++) {
+            emptyBlocks.add(new SampleBlock(size, capacity));
+        }
+        endBlock = new SampleBlock(size, 0);
+        endBlock.reset(END_OF_BLOCKS);
+        thread = new Thread(this::writeBlocks);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Checks whether a batch of games is already in the file.
+     *
+     * @param batch The index of the batch.
+     * @return True if a complete block of the batch was found when the file was opened.
+     */
+
+    public boolean isWritten(long batch) {
+        return writtenBatches.get((int) batch);
+    }
+
+    /**
+     * Retrieves the number of batches that were already in the file when it was opened.
+     *
+     * @return The number of complete blocks found.
+     */
+
+    public int getWrittenBatchCount() {
+        return writtenBatches.cardinality();
+    }
+
+    /**
+     * Takes an empty block from the pool, waiting while every block is being filled or written.
+     *
+     * @param batch The index of the batch the block is filled with.
+     * @return The empty block.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+
+    public SampleBlock takeBlock(long batch) throws InterruptedException {
+        SampleBlock block = emptyBlocks.take();
+        block.reset(batch);
+        return block;
+    }
+
+    /**
+     * Hands a filled block over to the writer thread.
+     *
+     * @param block The block, taken with takeBlock.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+
+    public void submit(SampleBlock block) throws InterruptedException {
+        fullBlocks.put(block);
+    }
+
+    /**
+     * Waits until the submitted blocks are written, then closes the file.
+     *
+     * @return The number of positions written by this writer.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+
+    public long close() throws InterruptedException {
+        fullBlocks.put(endBlock);
+        thread.join();
+        try {
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return sampleCount;
+    }
+
+    /**
+     * Retrieves the number of games written by this writer so far.
+     *
+     * @return The number of games.
+     */
+
+    public synchronized long getGameCount() {
+        return gameCount;
+    }
+
+    /**
+     * Runs on the writer thread: writes the submitted blocks until the end block arrives. After
+     * a write fails, blocks are only returned to the pool, so no worker waits forever.
+     */
+
+    private void writeBlocks() {
+        try {
+            while (true) {
+                SampleBlock block = fullBlocks.take();
+                if (block == endBlock) {
+                    break;
+                }
+                if (failure == null) {
+                    try {
+                        writeBlock(block);
+                    } catch (UncheckedIOException e) {
+                        failure = e;
+                    }
+                }
+                emptyBlocks.put(block);
+            }
+        } catch (InterruptedException e) {
+            failure = new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Encodes a block into the buffer column by column, and writes it to the file, so a run
+     * that stops loses at most the blocks not yet handed over.
+     *
+     * @param block The filled block.
+     */
+
+    private void writeBlock(SampleBlock block) {
+        int samples = block.getSampleCount();
+        int words = samples * block.getWordsPerPlane();
+        ensureRemaining(BLOCK_HEADER_BYTES);
+        buffer.putInt(BLOCK_MAGIC).putLong(block.getBatch()).putInt(block.getGameCount())
+                .putInt(samples);
+        for (int word = 0; word < words; word++) {
+            ensureRemaining(Long.BYTES);
+            buffer.putLong(block.getXPlane(word));
+        }
+        for (int word = 0; word < words; word++) {
+            ensureRemaining(Long.BYTES);
+            buffer.putLong(block.getOPlane(word));
+        }
+        for (int sample = 0; sample < samples; sample++) {
+            ensureRemaining(1);
+            buffer.put(block.getSide(sample));
+        }
+        for (int sample = 0; sample < samples; sample++) {
+            ensureRemaining(1);
+            buffer.put(block.getOutcome(sample));
+        }
+        for (int sample = 0; sample < samples; sample++) {
+            ensureRemaining(Short.BYTES);
+            buffer.putShort(block.getPly(sample));
+        }
+        flush();
+        synchronized (this) {
+            sampleCount += samples;
+            gameCount += block.getGameCount();
+        }
+    }
+
+    /**
+     * Computes the length of a block in the file.
+     *
+     * @param samples       The number of positions of the block.
+     * @param wordsPerPlane The number of words of one bit plane.
+     * @return The length of the block in bytes, with its header.
+     */
+
+    private static long blockBytes(int samples, int wordsPerPlane) {
+        return BLOCK_HEADER_BYTES + (long) samples * (2L * wordsPerPlane * Long.BYTES + 2
+                + Short.BYTES);
+    }
+
+    /**
+     * Scans the blocks of an existing file, noting the batch of every complete block.
+     *
+     * @param wordsPerPlane The number of words of one bit plane.
+     * @return The length of the file up to the end of its last complete block.
+     * @throws IOException If the file cannot be read.
+     */
+
+    private long scanBlocks(int wordsPerPlane) throws IOException {
+        ByteBuffer blockHeader = ByteBuffer.allocate(BLOCK_HEADER_BYTES);
+        long position = HEADER_BYTES;
+        long fileSize = channel.size();
+        while (position + BLOCK_HEADER_BYTES <= fileSize) {
+            blockHeader.clear();
+            readFully(blockHeader, position);
+            blockHeader.flip();
+            int magic = blockHeader.getInt();
+            long batch = blockHeader.getLong();
+            blockHeader.getInt();
+            int samples = blockHeader.getInt();
+            long end = position + blockBytes(samples, wordsPerPlane);
+            if (magic != BLOCK_MAGIC || samples < 0 || end > fileSize) {
+                break;
+            }
+            writtenBatches.set((int) batch);
+            position = end;
+        }
+        return Math.min(position, fileSize);
+    }
+
+    /**
+     * Reads from the file until a buffer is full.
+     *
+     * @param target   The buffer to fill.
+     * @param position The file position to read from.
+     * @throws IOException If the file cannot be read or ends first.
+     */
+
+    private void readFully(ByteBuffer target, long position) throws IOException {
+        while (target.hasRemaining()) {
+            if (channel.read(target, position + target.position()) < 0) {
+                throw new IOException("Unexpected end of sample file");
+            }
+        }
+    }
+
+    /**
+     * Writes the buffer to the file when it has less room left than a given number of bytes.
+     *
+     * @param bytes The number of bytes about to be put into the buffer.
+     */
+
+    private void ensureRemaining(int bytes) {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the whole buffer to the file.
+     */
+
+    private void flush() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.clear();
+    }
+}
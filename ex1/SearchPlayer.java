@@ -0,0 +1,913 @@
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The SearchPlayer class implements the Player interface with a game tree search.
+ * It runs negamax with alpha-beta pruning, scoring the leaves by the lines that are still open
+ * for each player. The search deepens iteratively, one move at a time up to its maximal depth,
+ * and plays the best move of the last depth it completed, so a search cut short by its node
+ * budget or its deadline still has a move from a full search. The search makes and unmakes its
+ * moves on the game board itself, so it does not copy the board or allocate while it runs.
+ * Moves are ordered by the best move remembered in a bounded transposition table, then by a
+ * history of moves that caused cutoffs, then by closeness to the center. The table is keyed on
+ * the canonical hash of the position, so the rotations and reflections of a position share one
+ * entry. Each depth starts from the best moves the previous depths stored in the table. The
+ * search stops early once its node budget is spent, or its deadline has passed when it is given
+ * one, and does not start a depth after half of its time is gone, as the depth would rarely
+ * finish.
+ * A pondering player keeps searching on the opponent's time: on a copy of the board it predicts
+ * the opponent's reply and searches the position after it. When the prediction comes true, the
+ * move found by a finished ponder search is played at once; otherwise the real search still
+ * finds the pondered subtrees in the transposition table, where the ponder search and the move
+ * after it share a generation so the pondered entries are not the first to be replaced.
+ * A player with several threads searches a move Lazy SMP style: helper searchers run the same
+ * root on copies of the board, every other one a move deeper, and share the transposition table
+ * without locks, so the main search finds much of its tree already searched. Only the main
+ * search picks the move; the helpers are stopped once it ends.
+ */
+
+public class SearchPlayer implements Player {
+
+    /**
+     * The maximal search depth used when none is configured.
+     */
+    public static final int DEFAULT_DEPTH = 4;
+
+    /**
+     * The number of nodes a single move may search when no budget is configured.
+     */
+    public static final long DEFAULT_NODE_BUDGET = 200_000;
+
+    /**
+     * The number of threads searching a move when none is configured. A single thread keeps
+     * the search deterministic and leaves the cores to the tournament workers.
+     */
+    public static final int DEFAULT_THREADS = 1;
+
+    private static final int TABLE_SIZE_BITS = 16;
+
+    private static final int WIN_SCORE = 1 << 22;
+
+    private static final int WIN_THRESHOLD = WIN_SCORE / 2;
+
+    private static final int INFINITY = WIN_SCORE + 1;
+
+    private static final int DRAW_SCORE = 0;
+
+    private static final int MAX_WINDOW_WEIGHT = 1 << 20;
+
+    private static final int WINDOW_WEIGHT_BASE = 4;
+
+    private static final int OPPONENT_SUM = Mark.X.ordinal() + Mark.O.ordinal();
+
+    private static final int NO_MOVE = -1;
+
+    private static final long CLOCK_CHECK_MASK = 127;
+
+    private static final long DEADLINE_MARGIN_NANOS = 1_000_000L;
+
+    private static final long PONDER_KEEP_ALIVE_SECONDS = 1;
+
+    private static final long HELPER_KEEP_ALIVE_SECONDS = 1;
+
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+
+    private static final Mark[] MARKS = Mark.values();
+
+    private final int maxDepth;
+
+    private final long nodeBudget;
+
+    private final boolean ponder;
+
+    private final int threads;
+
+    private final TranspositionTable table;
+
+    private Board board;
+
+    private int[] history;
+
+    private int[] centrality;
+
+    private int[] windowWeights;
+
+    private int[][] moveBuffers;
+
+    private int[][] orderBuffers;
+
+    private long evaluation;
+
+    private long nodes;
+
+    private boolean aborted;
+
+    private boolean timed;
+
+    private long deadline;
+
+    private int rootScore;
+
+    private volatile boolean stopRequested;
+
+    private ThreadPoolExecutor ponderThread;
+
+    private Future<?> ponderSearch;
+
+    private Board ponderBoard;
+
+    private long ponderedHash;
+
+    private int ponderedMoveCount;
+
+    private int ponderedMove = NO_MOVE;
+
+    private SearchPlayer[] helpers;
+
+    private Board[] helperBoards;
+
+    private Future<?>[] helperSearches;
+
+    private ThreadPoolExecutor helperPool;
+
+    /**
+     * Constructs a SearchPlayer with the default depth and node budget.
+     */
+    public SearchPlayer() {
+        this(DEFAULT_DEPTH, DEFAULT_NODE_BUDGET);
+    }
+
+    /**
+     * Constructs a SearchPlayer with a custom depth and node budget.
+     *
+     * @param maxDepth   The number of moves to look ahead.
+     * @param nodeBudget The maximal number of nodes to search for a single move.
+     */
+    public SearchPlayer(int maxDepth, long nodeBudget) {
+        this(maxDepth, nodeBudget, false);
+    }
+
+    /**
+     * Constructs a SearchPlayer with a custom depth and node budget that may ponder.
+     *
+     * @param maxDepth   The number of moves to look ahead.
+     * @param nodeBudget The maximal number of nodes to search for a single move.
+     * @param ponder     True to search on the opponent's time, false otherwise.
+     */
+    public SearchPlayer(int maxDepth, long nodeBudget, boolean ponder) {
+        this(maxDepth, nodeBudget, ponder, DEFAULT_THREADS);
+    }
+
+    /**
+     * Constructs a SearchPlayer with a custom depth and node budget that may ponder and may
+     * search every move on several threads.
+     *
+     * @param maxDepth   The number of moves to look ahead.
+     * @param nodeBudget The maximal number of nodes each thread may search for a single move.
+     * @param ponder     True to search on the opponent's time, false otherwise.
+     * @param threads    The number of threads searching a move, at least 1.
+     */
+    public SearchPlayer(int maxDepth, long nodeBudget, boolean ponder, int threads) {
+        this(maxDepth, nodeBudget, ponder, threads, new TranspositionTable(TABLE_SIZE_BITS));
+    }
+
+    /**
+     * Constructs a SearchPlayer over a transposition table, which helper searchers share with
+     * the player they help.
+     *
+     * @param maxDepth   The number of moves to look ahead.
+     * @param nodeBudget The maximal number of nodes to search for a single move.
+     * @param ponder     True to search on the opponent's time, false otherwise.
+     * @param threads    The number of threads searching a move, at least 1.
+     * @param table      The transposition table.
+     */
+    private SearchPlayer(int maxDepth, long nodeBudget, boolean ponder, int threads,
+                         TranspositionTable table) {
+        this.maxDepth = maxDepth;
+        this.nodeBudget = nodeBudget;
+        this.ponder = ponder;
+        this.threads = threads;
+        this.table = table;
+    }
+
+    /**
+     * Plays a turn on the board by searching for the best move.
+     *
+     * @param board The board on which the move is to be made.
+     * @param mark  The mark (X or O) associated with the player.
+     */
+
+    @Override
+    public void playTurn(Board board, Mark mark) {
+        playTurn(board, mark, Long.MAX_VALUE);
+    }
+
+    /**
+     * Plays a turn on the board by searching for the best move, stopping the search a little
+     * before the deadline. The clock is read once every CLOCK_CHECK_MASK + 1 nodes.
+     *
+     * @param board         The board on which the move is to be made.
+     * @param mark          The mark (X or O) associated with the player.
+     * @param deadlineNanos The System.nanoTime value by which the move has to be made, or
+     *                      Long.MAX_VALUE if the move is not timed.
+     */
+
+    @Override
+    public void playTurn(Board board, Mark mark, long deadlineNanos) {
+        boolean pondered = ponderSearch != null;
+        stopPondering();
+        int size = board.getSize();
+        if (ponderedMove != NO_MOVE && board.getHash() == ponderedHash
+                && board.getMoveCount() == ponderedMoveCount) {
+            board.putMark(mark, ponderedMove / size, ponderedMove % size);
+            ponderedMove = NO_MOVE;
+            return;
+        }
+        timed = deadlineNanos != Long.MAX_VALUE;
+        deadline = deadlineNanos - DEADLINE_MARGIN_NANOS;
+        if (!pondered) {
+            table.newSearch();
+        }
+        startHelpers(board, mark);
+        prepareSearch(board);
+        int cell = searchRoot(mark.ordinal());
+        stopHelpers();
+        board.putMark(mark, cell / size, cell % size);
+    }
+
+    /**
+     * Starts the helper searches of a move, one per thread beyond the first, each on its own
+     * copy of the board. The helper threads end after a second without work.
+     *
+     * @param board The board on which the move is to be made.
+     * @param mark  The mark (X or O) associated with the player.
+     */
+
+    private void startHelpers(Board board, Mark mark) {
+        if (threads <= 1) {
+            return;
+        }
+        if (helpers == null) {
+            helpers = new SearchPlayer[threads - 1];
+            helperBoards = new Board[threads - 1];
+            helperSearches = new Future<?>[threads - 1];
+            for (int i = 0; i < helpers.length; i++) {
+                helpers[i] = new SearchPlayer(maxDepth + (i + 1) % 2, nodeBudget, false, 1,
+                        table);
+            }
+            helperPool = new ThreadPoolExecutor(threads - 1, threads - 1,
+                    HELPER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    SearchPlayer::newDaemonThread);
+            helperPool.allowCoreThreadTimeOut(true);
+        }
+        for (int i = 0; i < helpers.length; i++) {
+            SearchPlayer helper = helpers[i];
+            Board helperBoard = copyBoard(board, helperBoards[i]);
+            helperBoards[i] = helperBoard;
+            helper.timed = timed;
+            helper.deadline = deadline;
+            helper.stopRequested = false;
+            helperSearches[i] = helperPool.submit(() -> {
+                helper.prepareSearch(helperBoard);
+                helper.searchRoot(mark.ordinal());
+            });
+        }
+    }
+
+    /**
+     * Stops the helper searches of a move and waits for them to end.
+     */
+
+    private void stopHelpers() {
+        if (helpers == null) {
+            return;
+        }
+        for (SearchPlayer helper : helpers) {
+            helper.stopRequested = true;
+        }
+        try {
+            for (Future<?> search : helperSearches) {
+                search.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Starts pondering on a copy of the board, if this player ponders. The search runs on a
+     * helper thread, which ends after a second without work.
+     *
+     * @param board The board after the player's move.
+     * @param mark  The mark (X or O) associated with the player.
+     */
+
+    @Override
+    public void startPondering(Board board, Mark mark) {
+        if (!ponder || ponderSearch != null) {
+            return;
+        }
+        ponderBoard = copyBoard(board, ponderBoard);
+        if (ponderThread == null) {
+            ponderThread = new ThreadPoolExecutor(1, 1, PONDER_KEEP_ALIVE_SECONDS,
+                    TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    SearchPlayer::newDaemonThread);
+            ponderThread.allowCoreThreadTimeOut(true);
+        }
+        stopRequested = false;
+        ponderedMove = NO_MOVE;
+        ponderSearch = ponderThread.submit(() -> ponderOn(mark));
+    }
+
+    /**
+     * Stops the pondering search, if one runs, and waits for it to end.
+     */
+
+    @Override
+    public void stopPondering() {
+        if (ponderSearch == null) {
+            return;
+        }
+        stopRequested = true;
+        try {
+            ponderSearch.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            ponderSearch = null;
+            stopRequested = false;
+        }
+    }
+
+    /**
+     * Copies a board by replaying its moves, so the copy can take them back.
+     *
+     * @param board The board to copy.
+     * @param copy  A board to reuse if it has the same dimensions, or null.
+     * @return The copy.
+     */
+
+    private static Board copyBoard(Board board, Board copy) {
+        if (copy == null || copy.getSize() != board.getSize()
+                || copy.getWinStreak() != board.getWinStreak()) {
+            copy = new Board(board.getSize(), board.getWinStreak());
+        } else {
+            copy.reset();
+        }
+        int size = board.getSize();
+        for (int i = 0; i < board.getMoveCount(); i++) {
+            int cell = board.getMove(i);
+            copy.putMark(board.getMark(cell / size, cell % size), cell / size, cell % size);
+        }
+        return copy;
+    }
+
+    /**
+     * Creates a daemon thread for the ponder search or the helper searches, so an idle player
+     * does not keep the process alive.
+     *
+     * @param runnable The task of the thread.
+     * @return The thread.
+     */
+
+    private static Thread newDaemonThread(Runnable runnable) {
+        Thread thread = new Thread(runnable);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Ponders on the copied board: predicts the opponent's reply, plays it, then searches the
+     * position after it as if it were the player's turn, filling the transposition table.
+     * The reply is the best move the last search remembered for the position, or found by a
+     * search of the opponent's moves if the table has none.
+     *
+     * @param mark The mark (X or O) associated with the player.
+     */
+
+    private void ponderOn(Mark mark) {
+        timed = false;
+        Mark opponent = MARKS[OPPONENT_SUM - mark.ordinal()];
+        table.newSearch();
+        prepareSearch(ponderBoard);
+        int size = ponderBoard.getSize();
+        int reply = probeMove();
+        if (reply == NO_MOVE || ponderBoard.getMark(reply / size, reply % size) != Mark.BLANK) {
+            reply = searchRoot(opponent.ordinal());
+            if (aborted) {
+                return;
+            }
+        }
+        ponderBoard.putMark(opponent, reply / size, reply % size);
+        if (ponderBoard.completesStreak(reply / size, reply % size)
+                || ponderBoard.getBlankCount() == 0) {
+            return;
+        }
+        prepareSearch(ponderBoard);
+        int move = searchRoot(mark.ordinal());
+        if (!aborted || !stopRequested) {
+            ponderedHash = ponderBoard.getHash();
+            ponderedMoveCount = ponderBoard.getMoveCount();
+            ponderedMove = move;
+        }
+    }
+
+    /**
+     * Prepares a search on the board, allocating the search buffers only when the board
+     * dimensions change.
+     *
+     * @param board The board on which the move is to be made.
+     */
+
+    private void prepareSearch(Board board) {
+        if (this.board == null || this.board.getSize() != board.getSize()
+                || this.board.getWinStreak() != board.getWinStreak()) {
+            int cellCount = board.getSize() * board.getSize();
+            history = new int[cellCount];
+            centrality = buildCentrality(board.getSize());
+            windowWeights = buildWindowWeights(board.getWinStreak());
+            moveBuffers = new int[maxDepth + 1][cellCount];
+            orderBuffers = new int[maxDepth + 1][cellCount];
+        } else {
+            for (int cell = 0; cell < history.length; cell++) {
+                history[cell] >>= 1;
+            }
+        }
+        this.board = board;
+        evaluation = evaluate(Mark.X.ordinal());
+        nodes = 0;
+        aborted = false;
+    }
+
+    /**
+     * Searches the root with iterative deepening, up to the maximal depth. Deepening stops once
+     * a depth finds a forced win or loss, or, in a timed search, once half of the time to the
+     * deadline is spent.
+     *
+     * @param side The ordinal of the mark to move.
+     * @return The index of the best cell of the last completed depth, or of the best cell found
+     * so far if not even the first depth completed.
+     */
+
+    private int searchRoot(int side) {
+        long startNanos = System.nanoTime();
+        int bestMove = NO_MOVE;
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            int move = searchRoot(side, depth);
+            if (aborted) {
+                if (bestMove == NO_MOVE) {
+                    bestMove = move;
+                }
+                break;
+            }
+            bestMove = move;
+            if (Math.abs(rootScore) > WIN_THRESHOLD
+                    || timed && System.nanoTime() - startNanos > (deadline - startNanos) / 2) {
+                break;
+            }
+        }
+        return bestMove;
+    }
+
+    /**
+     * Searches all the moves of the side to move at the root to a given depth, the remembered
+     * best move first, and leaves the best score in rootScore.
+     *
+     * @param side  The ordinal of the mark to move.
+     * @param depth The depth to search.
+     * @return The index of the best cell found.
+     */
+
+    private int searchRoot(int side, int depth) {
+        int moveCount = generateMoves(0, probeMove());
+        int[] moves = moveBuffers[0];
+        int bestMove = moves[0];
+        int alpha = -INFINITY;
+        for (int i = 0; i < moveCount; i++) {
+            int score = searchMove(moves[i], side, depth, alpha, INFINITY, 0);
+            if (aborted) {
+                break;
+            }
+            if (score > alpha) {
+                alpha = score;
+                bestMove = moves[i];
+            }
+        }
+        if (!aborted) {
+            int symmetry = board.getCanonicalSymmetry();
+            table.store(board.getSymmetryHash(symmetry), alpha, toTableMove(bestMove, symmetry),
+                    depth, TranspositionTable.EXACT);
+        }
+        rootScore = alpha;
+        return bestMove;
+    }
+
+    /**
+     * Searches the position below a node with negamax and alpha-beta pruning.
+     *
+     * @param side  The ordinal of the mark to move.
+     * @param depth The remaining depth to search.
+     * @param alpha The lower bound of the search window.
+     * @param beta  The upper bound of the search window.
+     * @param ply   The distance from the root.
+     * @return The score of the position from the point of view of the side to move.
+     */
+
+    private int negamax(int side, int depth, int alpha, int beta, int ply) {
+        if (++nodes > nodeBudget || (nodes & CLOCK_CHECK_MASK) == 0 && (stopRequested
+                || timed && System.nanoTime() - deadline > 0)) {
+            aborted = true;
+            return DRAW_SCORE;
+        }
+        if (depth == 0) {
+            long score = side == Mark.X.ordinal() ? evaluation : -evaluation;
+            return (int) Math.max(1 - WIN_THRESHOLD, Math.min(WIN_THRESHOLD - 1, score));
+        }
+        int symmetry = board.getCanonicalSymmetry();
+        long key = board.getSymmetryHash(symmetry);
+        long entry = table.probe(key);
+        int tableMove = NO_MOVE;
+        if (entry != TranspositionTable.NO_ENTRY) {
+            tableMove = fromTableMove(TranspositionTable.getMove(entry), symmetry);
+            if (TranspositionTable.getDepth(entry) >= depth) {
+                int score = fromTableScore(TranspositionTable.getScore(entry), ply);
+                int bound = TranspositionTable.getBound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER_BOUND && score >= beta)
+                        || (bound == TranspositionTable.UPPER_BOUND && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+        int originalAlpha = alpha;
+        int moveCount = generateMoves(ply, tableMove);
+        int[] moves = moveBuffers[ply];
+        int bestScore = -INFINITY;
+        int bestMove = NO_MOVE;
+        for (int i = 0; i < moveCount; i++) {
+            int score = searchMove(moves[i], side, depth, alpha, beta, ply);
+            if (aborted) {
+                return DRAW_SCORE;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = moves[i];
+                if (score > alpha) {
+                    alpha = score;
+                }
+                if (alpha >= beta) {
+                    history[bestMove] += depth * depth;
+                    break;
+                }
+            }
+        }
+        int bound = TranspositionTable.EXACT;
+        if (bestScore <= originalAlpha) {
+            bound = TranspositionTable.UPPER_BOUND;
+        } else if (bestScore >= beta) {
+            bound = TranspositionTable.LOWER_BOUND;
+        }
+        table.store(key, toTableScore(bestScore, ply), toTableMove(bestMove, symmetry), depth,
+                bound);
+        return bestScore;
+    }
+
+    /**
+     * Plays a move, scores the resulting position and takes the move back.
+     *
+     * @param cell  The index of the cell to mark.
+     * @param side  The ordinal of the mark to move.
+     * @param depth The remaining depth at the node the move is played from.
+     * @param alpha The lower bound of the search window.
+     * @param beta  The upper bound of the search window.
+     * @param ply   The distance of the node the move is played from to the root.
+     * @return The score of the move from the point of view of the side that played it.
+     */
+
+    private int searchMove(int cell, int side, int depth, int alpha, int beta, int ply) {
+        long delta = evaluationDelta(cell, side);
+        evaluation += delta;
+        int size = board.getSize();
+        board.makeMove(MARKS[side], cell / size, cell % size);
+        int score;
+        if (board.completesStreak(cell / size, cell % size)) {
+            score = WIN_SCORE - ply - 1;
+        } else if (board.getBlankCount() == 0) {
+            score = DRAW_SCORE;
+        } else {
+            score = -negamax(OPPONENT_SUM - side, depth - 1, -beta, -alpha, ply + 1);
+        }
+        board.unmakeMove();
+        evaluation -= delta;
+        return score;
+    }
+
+    /**
+     * Looks up the best move remembered for the current position.
+     *
+     * @return The index of the remembered cell, or NO_MOVE if there is none.
+     */
+
+    private int probeMove() {
+        int symmetry = board.getCanonicalSymmetry();
+        long entry = table.probe(board.getSymmetryHash(symmetry));
+        if (entry == TranspositionTable.NO_ENTRY) {
+            return NO_MOVE;
+        }
+        return fromTableMove(TranspositionTable.getMove(entry), symmetry);
+    }
+
+    /**
+     * Maps a move of the current position into the canonical form of the position, the frame
+     * the transposition table is keyed in.
+     *
+     * @param move     The index of the cell, or NO_MOVE.
+     * @param symmetry The canonical symmetry of the current position.
+     * @return The index of the cell in the canonical form, or NO_MOVE.
+     */
+
+    private int toTableMove(int move, int symmetry) {
+        if (move == NO_MOVE) {
+            return NO_MOVE;
+        }
+        return Board.transformCell(symmetry, move, board.getSize());
+    }
+
+    /**
+     * Maps a move read from the transposition table back from the canonical form of the position.
+     *
+     * @param move     The index of the cell in the canonical form, or NO_MOVE.
+     * @param symmetry The canonical symmetry of the current position.
+     * @return The index of the cell on the board, or NO_MOVE.
+     */
+
+    private int fromTableMove(int move, int symmetry) {
+        if (move == NO_MOVE) {
+            return NO_MOVE;
+        }
+        return Board.transformCell(Board.inverseSymmetry(symmetry), move, board.getSize());
+    }
+
+    /**
+     * Fills the move buffer of a ply with the blank cells, best candidates first.
+     *
+     * @param ply       The distance from the root, selecting the buffers to use.
+     * @param firstMove A cell to put first, or NO_MOVE.
+     * @return The number of moves generated.
+     */
+
+    private int generateMoves(int ply, int firstMove) {
+        int[] moves = moveBuffers[ply];
+        int[] order = orderBuffers[ply];
+        int count = 0;
+        for (int index = 0; index < board.getBlankCount(); index++) {
+            int cell = board.getBlankCell(index);
+            int value = cell == firstMove ? Integer.MAX_VALUE : history[cell] + centrality[cell];
+            int i = count++;
+            while (i > 0 && order[i - 1] < value) {
+                moves[i] = moves[i - 1];
+                order[i] = order[i - 1];
+                i--;
+            }
+            moves[i] = cell;
+            order[i] = value;
+        }
+        return count;
+    }
+
+    /**
+     * Scores a position by the windows of winStreak cells that only one player has marked.
+     * The more marks such a window holds, the more it is worth to that player.
+     * The search keeps this score up to date move by move, see evaluationDelta.
+     *
+     * @param side The ordinal of the mark to score for.
+     * @return The score of the position from the point of view of the side.
+     */
+
+    private long evaluate(int side) {
+        int size = board.getSize();
+        long score = 0;
+        for (int i = 0; i < size; i++) {
+            score += evaluateLine(side, i, 0, 0, 1);
+            score += evaluateLine(side, 0, i, 1, 0);
+            score += evaluateLine(side, i, 0, 1, 1);
+            score += evaluateLine(side, 0, i, 1, -1);
+            if (i > 0) {
+                score += evaluateLine(side, 0, i, 1, 1);
+                score += evaluateLine(side, i, size - 1, 1, -1);
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Computes how marking a blank cell changes the score of the position for X. Only the
+     * windows of winStreak cells that contain the cell are affected.
+     *
+     * @param cell The index of the blank cell.
+     * @param side The ordinal of the mark to place on it.
+     * @return The change of the score from the point of view of X.
+     */
+
+    private long evaluationDelta(int cell, int side) {
+        int size = board.getSize();
+        int winStreak = board.getWinStreak();
+        int row = cell / size;
+        int col = cell % size;
+        long delta = 0;
+        for (int[] direction : DIRECTIONS) {
+            int rowStep = direction[0];
+            int colStep = direction[1];
+            int back = countCellsInside(row, col, -rowStep, -colStep, winStreak - 1);
+            int forward = countCellsInside(row, col, rowStep, colStep, winStreak - 1);
+            if (back + forward + 1 < winStreak) {
+                continue;
+            }
+            int xCount = 0;
+            int oCount = 0;
+            for (int offset = -back; offset < winStreak - back - 1; offset++) {
+                Mark mark = board.getMark(row + offset * rowStep, col + offset * colStep);
+                xCount += mark == Mark.X ? 1 : 0;
+                oCount += mark == Mark.O ? 1 : 0;
+            }
+            for (int start = -back; start + winStreak - 1 <= forward; start++) {
+                int end = start + winStreak - 1;
+                Mark mark = board.getMark(row + end * rowStep, col + end * colStep);
+                xCount += mark == Mark.X ? 1 : 0;
+                oCount += mark == Mark.O ? 1 : 0;
+                if (side == Mark.X.ordinal()) {
+                    delta += windowScore(xCount + 1, oCount) - windowScore(xCount, oCount);
+                } else {
+                    delta += windowScore(xCount, oCount + 1) - windowScore(xCount, oCount);
+                }
+                mark = board.getMark(row + start * rowStep, col + start * colStep);
+                xCount -= mark == Mark.X ? 1 : 0;
+                oCount -= mark == Mark.O ? 1 : 0;
+            }
+        }
+        return delta;
+    }
+
+    /**
+     * Counts the cells following a cell in one direction that are inside the board.
+     *
+     * @param row     The row of the starting cell, which is not counted.
+     * @param col     The column of the starting cell, which is not counted.
+     * @param rowStep The row direction to advance in.
+     * @param colStep The column direction to advance in.
+     * @param limit   The maximal number of cells to count.
+     * @return The number of cells inside the board, at most limit.
+     */
+
+    private int countCellsInside(int row, int col, int rowStep, int colStep, int limit) {
+        int size = board.getSize();
+        int count = 0;
+        int tempRow = row + rowStep;
+        int tempCol = col + colStep;
+        while (count < limit && tempRow >= 0 && tempRow < size && tempCol >= 0 && tempCol < size) {
+            count++;
+            tempRow += rowStep;
+            tempCol += colStep;
+        }
+        return count;
+    }
+
+    /**
+     * Scores a single window of winStreak cells for X.
+     *
+     * @param xCount The number of X marks in the window.
+     * @param oCount The number of O marks in the window.
+     * @return The weight of the window for X, negative if it only holds O marks.
+     */
+
+    private int windowScore(int xCount, int oCount) {
+        if (oCount == 0) {
+            return windowWeights[xCount];
+        }
+        if (xCount == 0) {
+            return -windowWeights[oCount];
+        }
+        return 0;
+    }
+
+    /**
+     * Scores the windows along a single line of the board.
+     *
+     * @param side    The ordinal of the mark to score for.
+     * @param row     The row of the first cell of the line.
+     * @param col     The column of the first cell of the line.
+     * @param rowStep The row direction of the line.
+     * @param colStep The column direction of the line.
+     * @return The sum of the window weights of the side minus those of its opponent.
+     */
+
+    private long evaluateLine(int side, int row, int col, int rowStep, int colStep) {
+        int size = board.getSize();
+        int winStreak = board.getWinStreak();
+        Mark own = MARKS[side];
+        Mark opponent = MARKS[OPPONENT_SUM - side];
+        int ownCount = 0;
+        int otherCount = 0;
+        int length = 0;
+        long score = 0;
+        for (int tempRow = row, tempCol = col; tempRow < size && tempCol >= 0 && tempCol < size;
+             tempRow += rowStep, tempCol += colStep) {
+            Mark mark = board.getMark(tempRow, tempCol);
+            ownCount += mark == own ? 1 : 0;
+            otherCount += mark == opponent ? 1 : 0;
+            if (++length > winStreak) {
+                Mark oldMark = board.getMark(tempRow - winStreak * rowStep,
+                        tempCol - winStreak * colStep);
+                ownCount -= oldMark == own ? 1 : 0;
+                otherCount -= oldMark == opponent ? 1 : 0;
+            }
+            if (length >= winStreak) {
+                if (otherCount == 0) {
+                    score += windowWeights[ownCount];
+                } else if (ownCount == 0) {
+                    score -= windowWeights[otherCount];
+                }
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Converts a score relative to the root into a score relative to the node it is stored for,
+     * so winning scores stay correct when the position is reached at a different ply.
+     *
+     * @param score The score relative to the root.
+     * @param ply   The distance of the node from the root.
+     * @return The score relative to the node.
+     */
+
+    private static int toTableScore(int score, int ply) {
+        if (score > WIN_THRESHOLD) {
+            return score + ply;
+        }
+        if (score < -WIN_THRESHOLD) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    /**
+     * Converts a score read from the transposition table back into a score relative to the root.
+     *
+     * @param score The score relative to the node.
+     * @param ply   The distance of the node from the root.
+     * @return The score relative to the root.
+     */
+
+    private static int fromTableScore(int score, int ply) {
+        if (score > WIN_THRESHOLD) {
+            return score - ply;
+        }
+        if (score < -WIN_THRESHOLD) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    /**
+     * Builds the ordering bonus of each cell, higher for cells closer to the center.
+     *
+     * @param size The size of the board.
+     * @return The bonus of each cell, indexed by row * size + col.
+     */
+
+    private static int[] buildCentrality(int size) {
+        int[] bonus = new int[size * size];
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                bonus[row * size + col] = 2 * size - Math.abs(2 * row - size + 1)
+                        - Math.abs(2 * col - size + 1);
+            }
+        }
+        return bonus;
+    }
+
+    /**
+     * Builds the weight of a window by the number of marks it holds.
+     *
+     * @param winStreak The streak length required for a win.
+     * @return The weight of a window holding i marks of a single player, at index i.
+     */
+
+    private static int[] buildWindowWeights(int winStreak) {
+        int[] weights = new int[winStreak + 1];
+        int weight = 1;
+        for (int count = 1; count <= winStreak; count++) {
+            weights[count] = weight;
+            weight = Math.min(weight * WINDOW_WEIGHT_BASE, MAX_WINDOW_WEIGHT);
+        }
+        return weights;
+    }
+}
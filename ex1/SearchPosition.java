@@ -0,0 +1,183 @@
+/**
+ * The SearchPosition class is a lightweight snapshot of a Board used by every thread of the
+ * MctsPlayer to play out moves and take them back. Cells are addressed by their index,
+ * row * size + col, and hold the ordinal of their Mark.
+ */
+
+public class SearchPosition {
+
+    private static final byte BLANK = (byte) Mark.BLANK.ordinal();
+
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+
+    private final int size;
+
+    private final int winStreak;
+
+    private final byte[] cells;
+
+    private final int[] moves;
+
+    private int moveCount;
+
+    private int blankCount;
+
+    /**
+     * Constructs a search position holding a copy of the marks on a board.
+     *
+     * @param board The board to copy.
+     */
+    public SearchPosition(Board board) {
+        this.size = board.getSize();
+        this.winStreak = board.getWinStreak();
+        this.cells = new byte[size * size];
+        this.moves = new int[size * size];
+        load(board);
+    }
+
+    /**
+     * Replaces the content of this position with the marks on a board of the same size.
+     * The moves of the board are not known, so the loaded marks cannot be taken back.
+     *
+     * @param board The board to copy.
+     */
+
+    public void load(Board board) {
+        moveCount = 0;
+        blankCount = 0;
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                int cell = row * size + col;
+                cells[cell] = (byte) board.getMark(row, col).ordinal();
+                if (cells[cell] == BLANK) {
+                    blankCount++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Retrieves the size of the board.
+     *
+     * @return The size of the square board.
+     */
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Retrieves the streak length required for a win.
+     *
+     * @return The streak length for a win.
+     */
+
+    public int getWinStreak() {
+        return winStreak;
+    }
+
+    /**
+     * Retrieves the number of cells on the board.
+     *
+     * @return The number of cells, size * size.
+     */
+
+    public int getCellCount() {
+        return cells.length;
+    }
+
+    /**
+     * Checks whether a cell is blank.
+     *
+     * @param cell The index of the cell.
+     * @return True if no mark is placed on the cell.
+     */
+
+    public boolean isEmpty(int cell) {
+        return cells[cell] == BLANK;
+    }
+
+    /**
+     * Retrieves the number of blank cells left on the board.
+     *
+     * @return The number of blank cells.
+     */
+
+    public int getBlankCount() {
+        return blankCount;
+    }
+
+    /**
+     * Places a mark on a blank cell.
+     *
+     * @param cell     The index of the cell.
+     * @param markCode The ordinal of the mark to place.
+     */
+
+    public void play(int cell, int markCode) {
+        cells[cell] = (byte) markCode;
+        moves[moveCount++] = cell;
+        blankCount--;
+    }
+
+    /**
+     * Takes back the last move played with play.
+     */
+
+    public void undo() {
+        int cell = moves[--moveCount];
+        cells[cell] = BLANK;
+        blankCount++;
+    }
+
+    /**
+     * Checks whether the mark on a cell is part of a streak of winStreak marks.
+     * Only the four lines through the cell are inspected.
+     *
+     * @param cell The index of a marked cell.
+     * @return True if the mark on the cell completes a winning streak.
+     */
+
+    public boolean isWinningMove(int cell) {
+        int row = cell / size;
+        int col = cell % size;
+        int markCode = cells[cell];
+        for (int[] direction : DIRECTIONS) {
+            int streak = 1;
+            streak += countStreak(markCode, row, col, direction[0], direction[1],
+                    winStreak - streak);
+            streak += countStreak(markCode, row, col, -direction[0], -direction[1],
+                    winStreak - streak);
+            if (streak >= winStreak) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Counts the marks following a cell in one direction, stopping at the first different
+     * mark, at the edge of the board or once the limit is reached.
+     *
+     * @param markCode The ordinal of the mark to count.
+     * @param row      The row of the starting cell, which is not counted.
+     * @param col      The column of the starting cell, which is not counted.
+     * @param rowStep  The row direction to advance in.
+     * @param colStep  The column direction to advance in.
+     * @param limit    The maximal number of cells to count.
+     * @return The number of consecutive marks found.
+     */
+
+    private int countStreak(int markCode, int row, int col, int rowStep, int colStep, int limit) {
+        int count = 0;
+        int tempRow = row + rowStep;
+        int tempCol = col + colStep;
+        while (count < limit && tempRow >= 0 && tempRow < size && tempCol >= 0 && tempCol < size
+                && cells[tempRow * size + tempCol] == markCode) {
+            count++;
+            tempRow += rowStep;
+            tempCol += colStep;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,310 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The SelfPlay class generates training data from games an engine plays against itself.
+ * The games are split into batches, which the workers claim one at a time and play with a fresh
+ * pair of players, so a batch does not depend on the batches played before it on the same
+ * worker. Every game opens with a few random moves, and every position of a game is sampled
+ * with a fixed probability, both drawn from a generator seeded by the seed and the game index.
+ * The sampled positions and their final outcomes are collected in a SampleBlock per batch and
+ * written by a SampleWriter. A run that stops can be resumed with the same arguments: the
+ * batches already in the sample file are skipped, and a file written with other arguments is
+ * refused.
+ */
+
+public class SelfPlay {
+
+    private final static int BATCH_GAMES = 256;
+
+    private final static int OPTIONS_INDEX = 5;
+
+    private final static int BLOCKS_PER_WORKER = 2;
+
+    private final static long SEED_STRIDE = 0x9E3779B97F4A7C15L;
+
+    private final static double NANOS_PER_SECOND = 1e9;
+
+    private final long games;
+
+    private final int size;
+
+    private final int winStreak;
+
+    private final String playerType;
+
+    private final TournamentOptions options;
+
+    private final PlayerFactory playerFactory;
+
+    private final AtomicLong nextBatch = new AtomicLong();
+
+    private SampleWriter writer;
+
+    /**
+     * Constructs a SelfPlay run.
+     *
+     * @param games      The number of games to play.
+     * @param size       The size of the game board.
+     * @param winStreak  The streak length required for a win.
+     * @param playerType The type of the player playing both sides.
+     * @param options    The optional settings: the number of workers, the seed, the sampling
+     *                   rate, the number of random opening moves and the engine settings.
+     */
+    public SelfPlay(long games, int size, int winStreak, String playerType,
+                    TournamentOptions options) {
+        this.games = games;
+        this.size = size;
+        this.winStreak = winStreak;
+        this.playerType = playerType;
+        this.options = options;
+        this.playerFactory = new PlayerFactory(options);
+    }
+
+    /**
+     * Plays all the games that are not in the sample file yet, and prints a summary.
+     *
+     * @param path The path of the sample file.
+     * @throws IOException If the sample file cannot be opened, or has different settings.
+     */
+
+    public void run(String path) throws IOException {
+        int workers = options.getWorkers();
+        writer = new SampleWriter(path, size, winStreak, games, options.getSeed(),
+                options.getSampleRate(), options.getOpeningMoves(), BATCH_GAMES,
+                BLOCKS_PER_WORKER * workers, BATCH_GAMES * size * size);
+        long startNanos = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int worker = 0; worker < workers; worker++) {
+            tasks.add(pool.submit(() -> {
+                playBatches();
+                return null;
+            }));
+        }
+        pool.shutdown();
+        long samples;
+        try {
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+            samples = writer.close();
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException e) {
+            pool.shutdownNow();
+            throw new IllegalStateException(e.getCause());
+        }
+        double seconds = (System.nanoTime() - startNanos) / NANOS_PER_SECOND;
+        System.out.printf(Locale.ROOT, "Resumed batches: %d%nGames: %d%nPositions: %d%n"
+                        + "Positions per second: %.0f%n", writer.getWrittenBatchCount(),
+                writer.getGameCount(), samples, samples / Math.max(seconds, 1e-9));
+    }
+
+    /**
+     * Plays batches on a single worker until every batch is claimed.
+     *
+     * @throws InterruptedException If the worker is interrupted while waiting for a block.
+     */
+
+    private void playBatches() throws InterruptedException {
+        TimeControl timeControl = options.createTimeControl();
+        Board replay = new Board(size, winStreak);
+        long batch;
+        while ((batch = claimBatch()) >= 0) {
+            OpeningPlayer playerX = new OpeningPlayer(playerFactory.buildPlayer(playerType),
+                    options.getOpeningMoves());
+            OpeningPlayer playerO = new OpeningPlayer(playerFactory.buildPlayer(playerType),
+                    options.getOpeningMoves());
+            Game game = new Game(playerX, playerO, replay.getSize(), replay.getWinStreak(),
+                    new VoidRenderer(), timeControl);
+            SampleBlock block = writer.takeBlock(batch);
+            long lastGame = Math.min(games, (batch + 1) * BATCH_GAMES);
+            for (long gameIndex = batch * BATCH_GAMES; gameIndex < lastGame; gameIndex++) {
+                SplittableRandom random =
+                        new SplittableRandom(options.getSeed() + gameIndex * SEED_STRIDE);
+                playerX.setRandom(random);
+                playerO.setRandom(random);
+                game.reset();
+                Mark winner = game.run();
+                sampleGame(game, replay, random, block);
+                block.endGame(winner);
+            }
+            writer.submit(block);
+        }
+    }
+
+    /**
+     * Claims the next batch that is not in the sample file yet.
+     *
+     * @return The index of the batch, or -1 if every batch is claimed.
+     */
+
+    private long claimBatch() {
+        long batchCount = (games + BATCH_GAMES - 1) / BATCH_GAMES;
+        while (true) {
+            long batch = nextBatch.getAndIncrement();
+            if (batch >= batchCount) {
+                return -1;
+            }
+            if (!writer.isWritten(batch)) {
+                return batch;
+            }
+        }
+    }
+
+    /**
+     * Replays a finished game and adds the sampled positions to a block. X moves first.
+     *
+     * @param game   The finished game.
+     * @param replay The board the game is replayed on.
+     * @param random The generator of the game.
+     * @param block  The block the positions are added to.
+     */
+
+    private void sampleGame(Game game, Board replay, SplittableRandom random,
+                            SampleBlock block) {
+        double sampleRate = options.getSampleRate();
+        replay.reset();
+        for (int move = 0; move < game.getMoveCount(); move++) {
+            Mark side = move % 2 == 0 ? Mark.X : Mark.O;
+            if (random.nextDouble() < sampleRate) {
+                block.addSample(replay, side);
+            }
+            int cell = game.getMove(move);
+            replay.putMark(side, cell / size, cell % size);
+        }
+    }
+
+    /**
+     * The OpeningPlayer class wraps a player and plays random moves instead of it until the
+     * board holds a given number of marks, so the games of a self-play run differ from each
+     * other even with deterministic players.
+     */
+
+    private static class OpeningPlayer implements Player {
+
+        private final Player player;
+
+        private final int openingMoves;
+
+        private SplittableRandom random;
+
+        /**
+         * Constructs an OpeningPlayer.
+         *
+         * @param player       The player making the moves after the opening.
+         * @param openingMoves The number of random moves at the start of a game.
+         */
+        OpeningPlayer(Player player, int openingMoves) {
+            this.player = player;
+            this.openingMoves = openingMoves;
+        }
+
+        /**
+         * Sets the generator of the random moves of the next game.
+         *
+         * @param random The generator.
+         */
+
+        void setRandom(SplittableRandom random) {
+            this.random = random;
+        }
+
+        /**
+         * Plays a random blank cell during the opening, and lets the wrapped player move after
+         * it.
+         *
+         * @param board The board on which the move is to be made.
+         * @param mark  The mark (X or O) associated with the player.
+         */
+
+        @Override
+        public void playTurn(Board board, Mark mark) {
+            playTurn(board, mark, Long.MAX_VALUE);
+        }
+
+        /**
+         * Plays a random blank cell during the opening, and lets the wrapped player move within
+         * the time budget after it.
+         *
+         * @param board         The board on which the move is to be made.
+         * @param mark          The mark (X or O) associated with the player.
+         * @param deadlineNanos The System.nanoTime value by which the move has to be made, or
+         *                      Long.MAX_VALUE if the move is not timed.
+         */
+
+        @Override
+        public void playTurn(Board board, Mark mark, long deadlineNanos) {
+            if (board.getMoveCount() < openingMoves) {
+                int cell = board.getBlankCell(random.nextInt(board.getBlankCount()));
+                board.putMark(mark, cell / board.getSize(), cell % board.getSize());
+            } else if (deadlineNanos == Long.MAX_VALUE) {
+                player.playTurn(board, mark);
+            } else {
+                player.playTurn(board, mark, deadlineNanos);
+            }
+        }
+
+        /**
+         * Lets the wrapped player start pondering.
+         *
+         * @param board The board after the player's move.
+         * @param mark  The mark (X or O) associated with the player.
+         */
+
+        @Override
+        public void startPondering(Board board, Mark mark) {
+            player.startPondering(board, mark);
+        }
+
+        /**
+         * Lets the wrapped player stop pondering.
+         */
+
+        @Override
+        public void stopPondering() {
+            player.stopPondering();
+        }
+    }
+
+    /**
+     * The main method for running a self-play run. It accepts the number of games, the board
+     * size, the win streak, the player type and the path of the sample file, optionally
+     * followed by name=value options such as workers=8, seed=1, sample=0.25 or opening=2.
+     *
+     * @param args Command-line arguments.
+     * @throws IOException If the sample file cannot be opened, or has different settings.
+     */
+
+    public static void main(String[] args) throws IOException {
+        long games = Long.parseLong(args[0]);
+        int size = Integer.parseInt(args[1]);
+        int winStreak = Integer.parseInt(args[2]);
+        TournamentOptions options = TournamentOptions.parse(args, OPTIONS_INDEX);
+        if (options == null) {
+            System.out.println(Constants.UNKNOWN_OPTION);
+            return;
+        }
+        String playerType = args[3].toLowerCase();
+        if (!Arrays.asList(new PlayerFactory().getComputerPlayerTypes()).contains(playerType)) {
+            System.out.println(Constants.UNKNOWN_PLAYER_NAME);
+            return;
+        }
+        if (winStreak < 2 || winStreak > size) {
+            winStreak = size;
+        }
+        new SelfPlay(games, size, winStreak, playerType, options).run(args[4]);
+    }
+}
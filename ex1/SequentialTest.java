@@ -0,0 +1,147 @@
+import java.util.Locale;
+
+/**
+ * The SequentialTest class is a sequential probability ratio test of the Elo difference between
+ * two players. It compares the hypothesis H0 that the difference is elo0 with the hypothesis H1
+ * that it is elo1, and decides as soon as the results support one of them at the configured
+ * error rates: alpha, the chance of accepting H1 when H0 holds, and beta, the chance of accepting
+ * H0 when H1 holds.
+ * The log-likelihood ratio uses the normal approximation of the generalized SPRT over the
+ * win/tie/loss counts, so it is cheap enough to evaluate after every game.
+ */
+
+public class SequentialTest {
+
+    /**
+     * The results do not support either hypothesis yet.
+     */
+    public static final int CONTINUE = 0;
+
+    /**
+     * The results support H0, the Elo difference is elo0 or less.
+     */
+    public static final int ACCEPT_H0 = 1;
+
+    /**
+     * The results support H1, the Elo difference is elo1 or more.
+     */
+    public static final int ACCEPT_H1 = 2;
+
+    private static final double PRIOR_GAMES = 1;
+
+    private static final double ELO_BASE = 10;
+
+    private static final double ELO_SCALE = 400;
+
+    private final double elo0;
+
+    private final double elo1;
+
+    private final double score0;
+
+    private final double score1;
+
+    private final double lowerBound;
+
+    private final double upperBound;
+
+    private double llr = 0;
+
+    /**
+     * Constructs a SequentialTest.
+     *
+     * @param elo0  The Elo difference of the hypothesis H0.
+     * @param elo1  The Elo difference of the hypothesis H1, greater than elo0.
+     * @param alpha The chance of accepting H1 when H0 holds.
+     * @param beta  The chance of accepting H0 when H1 holds.
+     */
+    public SequentialTest(double elo0, double elo1, double alpha, double beta) {
+        this.elo0 = elo0;
+        this.elo1 = elo1;
+        this.score0 = expectedScore(elo0);
+        this.score1 = expectedScore(elo1);
+        this.lowerBound = Math.log(beta / (1 - alpha));
+        this.upperBound = Math.log((1 - beta) / alpha);
+    }
+
+    /**
+     * Updates the log-likelihood ratio with the results so far and tells whether one of the
+     * hypotheses is accepted. Every kind of result counts an extra game, so the test never
+     * decides on a handful of identical results.
+     *
+     * @param wins   The number of games the first player won.
+     * @param ties   The number of tied games.
+     * @param losses The number of games the first player lost.
+     * @return CONTINUE, ACCEPT_H0 or ACCEPT_H1.
+     */
+
+    public int check(long wins, long ties, long losses) {
+        double games = wins + ties + losses + 3 * PRIOR_GAMES;
+        double winRate = (wins + PRIOR_GAMES) / games;
+        double tieRate = (ties + PRIOR_GAMES) / games;
+        double score = winRate + tieRate / 2;
+        double variance = winRate + tieRate / 4 - score * score;
+        llr = games * (score1 - score0) * (2 * score - score0 - score1) / (2 * variance);
+        if (llr >= upperBound) {
+            return ACCEPT_H1;
+        }
+        if (llr <= lowerBound) {
+            return ACCEPT_H0;
+        }
+        return CONTINUE;
+    }
+
+    /**
+     * Retrieves the log-likelihood ratio computed by the last check.
+     *
+     * @return The log-likelihood ratio of H1 against H0.
+     */
+
+    public double getLlr() {
+        return llr;
+    }
+
+    /**
+     * Names the outcome of a check for machine-readable output.
+     *
+     * @param outcome CONTINUE, ACCEPT_H0 or ACCEPT_H1.
+     * @return "continue", "h0" or "h1".
+     */
+
+    public static String outcomeName(int outcome) {
+        return switch (outcome) {
+            case ACCEPT_H0 -> "h0";
+            case ACCEPT_H1 -> "h1";
+            default -> "continue";
+        };
+    }
+
+    /**
+     * Describes the outcome of a check, with the hypotheses and the decision bounds.
+     *
+     * @param outcome CONTINUE, ACCEPT_H0 or ACCEPT_H1.
+     * @return A single line describing the test.
+     */
+
+    public String describe(int outcome) {
+        String decision = switch (outcome) {
+            case ACCEPT_H0 -> "H0 accepted";
+            case ACCEPT_H1 -> "H1 accepted";
+            default -> "no decision";
+        };
+        return String.format(Locale.ROOT,
+                "SPRT elo0=%.1f elo1=%.1f: %s, LLR %.3f (bounds %.3f, %.3f)",
+                elo0, elo1, decision, llr, lowerBound, upperBound);
+    }
+
+    /**
+     * Computes the expected score of a player with a given Elo advantage.
+     *
+     * @param elo The Elo difference.
+     * @return The expected score, between 0 and 1.
+     */
+
+    private static double expectedScore(double elo) {
+        return 1 / (1 + Math.pow(ELO_BASE, -elo / ELO_SCALE));
+    }
+}
@@ -0,0 +1,263 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * The StatisticsWriter class writes machine-readable summaries of a tournament, one line per
+ * summary, either as CSV with a header line or as JSON objects (one per line).
+ * Summaries are collected in a buffer and written to the channel when the buffer fills up,
+ * when a second has passed since the last write, and when the writer is closed, so a long
+ * tournament streams its progress without paying for a system call per summary.
+ */
+
+public class StatisticsWriter {
+
+    /**
+     * The name of the CSV output format.
+     */
+    public static final String CSV = "csv";
+
+    /**
+     * The name of the JSON output format.
+     */
+    public static final String JSON = "json";
+
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private static final long FLUSH_NANOS = 1_000_000_000L;
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private static final String CSV_HEADER = "player1,player2,final,rounds,games_per_second,"
+            + "average_moves,player1_wins,player2_wins,ties,"
+            + "win_rate,win_rate_low,win_rate_high,"
+            + "x_rounds,x_wins,x_losses,x_ties,x_win_rate,x_win_rate_low,x_win_rate_high,"
+            + "o_rounds,o_wins,o_losses,o_ties,o_win_rate,o_win_rate_low,o_win_rate_high,"
+            + "sprt,sprt_llr";
+
+    private static final String NO_TEST = "off";
+
+    private final boolean json;
+
+    private final WritableByteChannel channel;
+
+    private final boolean ownsChannel;
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+
+    private final StringBuilder line = new StringBuilder();
+
+    private long lastFlush = System.nanoTime();
+
+    /**
+     * Constructs a StatisticsWriter writing to a channel. A CSV writer starts with the header line.
+     *
+     * @param format      The output format, CSV or JSON.
+     * @param channel     The channel the summaries are written to.
+     * @param ownsChannel True if closing the writer should close the channel, false otherwise.
+     */
+    public StatisticsWriter(String format, WritableByteChannel channel, boolean ownsChannel) {
+        this.json = JSON.equals(format);
+        this.channel = channel;
+        this.ownsChannel = ownsChannel;
+        if (!json) {
+            line.append(CSV_HEADER);
+            writeLine();
+        }
+    }
+
+    /**
+     * Opens a StatisticsWriter on a file, or on the standard output.
+     *
+     * @param format The output format, CSV or JSON.
+     * @param path   The path of the output file, or null for the standard output.
+     * @return The writer.
+     * @throws IOException If the file cannot be opened.
+     */
+
+    public static StatisticsWriter open(String format, String path) throws IOException {
+        if (path == null) {
+            return new StatisticsWriter(format, Channels.newChannel(System.out), false);
+        }
+        return new StatisticsWriter(format, FileChannel.open(Paths.get(path),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING), true);
+    }
+
+    /**
+     * Writes a summary of the rounds counted so far. Win rates are those of player 1, with the
+     * bounds of their 95% Wilson score intervals.
+     *
+     * @param statistics   The results of the rounds played so far.
+     * @param player1Name  The name of player 1.
+     * @param player2Name  The name of player 2.
+     * @param elapsedNanos The time since the tournament started, in nanoseconds.
+     * @param isFinal      True for the summary of the whole tournament, false otherwise.
+     * @param test         The sequential test the tournament stops on, or null if there is none.
+     * @param outcome      The outcome of the last check of the sequential test.
+     */
+
+    public void writeSummary(TournamentStatistics statistics, String player1Name,
+                             String player2Name, long elapsedNanos, boolean isFinal,
+                             SequentialTest test, int outcome) {
+        long rounds = statistics.getRounds();
+        double gamesPerSecond = elapsedNanos == 0 ? 0 : rounds * NANOS_PER_SECOND / elapsedNanos;
+        if (json) {
+            line.append("{\"player1\":\"").append(player1Name)
+                    .append("\",\"player2\":\"").append(player2Name)
+                    .append("\",\"final\":").append(isFinal);
+        } else {
+            line.append(player1Name).append(',').append(player2Name).append(',').append(isFinal);
+        }
+        appendField("rounds", rounds);
+        appendField("games_per_second", gamesPerSecond);
+        appendField("average_moves", statistics.getAverageMoves());
+        long wins = statistics.getCount(TournamentStatistics.PLAYER1_WIN);
+        appendField("player1_wins", wins);
+        appendField("player2_wins", statistics.getCount(TournamentStatistics.PLAYER2_WIN));
+        appendField("ties", statistics.getCount(TournamentStatistics.TIE));
+        appendRate("win_rate", wins, rounds);
+        appendSeat("x", statistics, true);
+        appendSeat("o", statistics, false);
+        appendName("sprt");
+        String state = test == null ? NO_TEST : SequentialTest.outcomeName(outcome);
+        line.append(json ? "\"" + state + "\"" : state);
+        appendField("sprt_llr", test == null ? 0 : test.getLlr());
+        if (json) {
+            line.append('}');
+        }
+        writeLine();
+        if (System.nanoTime() - lastFlush >= FLUSH_NANOS) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the buffered summaries and closes the channel if the writer owns it.
+     */
+
+    public void close() {
+        flush();
+        if (!ownsChannel) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Appends the results of the rounds in which player 1 played a given mark.
+     *
+     * @param prefix     The prefix of the field names, "x" or "o".
+     * @param statistics The results of the rounds played so far.
+     * @param player1IsX True for the rounds in which player 1 played X, false for O.
+     */
+
+    private void appendSeat(String prefix, TournamentStatistics statistics, boolean player1IsX) {
+        long rounds = statistics.getRounds(player1IsX);
+        long wins = statistics.getCount(player1IsX, TournamentStatistics.PLAYER1_WIN);
+        appendField(prefix + "_rounds", rounds);
+        appendField(prefix + "_wins", wins);
+        appendField(prefix + "_losses",
+                statistics.getCount(player1IsX, TournamentStatistics.PLAYER2_WIN));
+        appendField(prefix + "_ties", statistics.getCount(player1IsX, TournamentStatistics.TIE));
+        appendRate(prefix + "_win_rate", wins, rounds);
+    }
+
+    /**
+     * Appends a win rate followed by the bounds of its confidence interval.
+     *
+     * @param name   The name of the win rate field.
+     * @param wins   The number of wins.
+     * @param rounds The number of rounds.
+     */
+
+    private void appendRate(String name, long wins, long rounds) {
+        appendField(name, rounds == 0 ? 0 : (double) wins / rounds);
+        appendField(name + "_low", TournamentStatistics.wilsonLower(wins, rounds));
+        appendField(name + "_high", TournamentStatistics.wilsonUpper(wins, rounds));
+    }
+
+    /**
+     * Appends a whole number field to the current line.
+     *
+     * @param name  The name of the field, used by the JSON format.
+     * @param value The value of the field.
+     */
+
+    private void appendField(String name, long value) {
+        appendName(name);
+        line.append(value);
+    }
+
+    /**
+     * Appends a decimal field to the current line, with six digits after the point.
+     *
+     * @param name  The name of the field, used by the JSON format.
+     * @param value The value of the field.
+     */
+
+    private void appendField(String name, double value) {
+        appendName(name);
+        line.append(String.format(Locale.ROOT, "%.6f", value));
+    }
+
+    /**
+     * Appends the separator before a field and, in the JSON format, its name.
+     *
+     * @param name The name of the field.
+     */
+
+    private void appendName(String name) {
+        line.append(',');
+        if (json) {
+            line.append('"').append(name).append("\":");
+        }
+    }
+
+    /**
+     * Ends the current line and moves it into the buffer, writing the buffer to the channel
+     * whenever it fills up.
+     */
+
+    private void writeLine() {
+        line.append('\n');
+        CharBuffer chars = CharBuffer.wrap(line);
+        while (encoder.encode(chars, buffer, true).isOverflow()) {
+            flush();
+        }
+        encoder.reset();
+        line.setLength(0);
+    }
+
+    /**
+     * Writes the whole buffer to the channel.
+     */
+
+    private void flush() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.clear();
+        lastFlush = System.nanoTime();
+    }
+}
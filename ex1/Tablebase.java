@@ -0,0 +1,408 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The Tablebase class holds the game-theoretic value of every position reachable on a small
+ * board, from the point of view of the player to move: a win, a draw or a loss with perfect play.
+ * Positions are indexed in base 3, each cell contributing the ordinal of its mark times a power
+ * of 3, and every value takes 2 bits, so a 4x4 board needs about 10MB.
+ * The best move of a position is the move leading to the child position that is worst for the
+ * opponent, so it is found with a lookup per blank cell.
+ * A tablebase is computed by an exhaustive search from the empty board, which also solves the
+ * positions that perfect play never reaches, written to a file and memory-mapped when loaded.
+ */
+
+public class Tablebase {
+
+    /**
+     * The value of a position that has not been solved, because it cannot be reached.
+     */
+    public static final int UNKNOWN = 0;
+
+    /**
+     * The player to move loses with perfect play.
+     */
+    public static final int LOSS = 1;
+
+    /**
+     * The game is a draw with perfect play.
+     */
+    public static final int DRAW = 2;
+
+    /**
+     * The player to move wins with perfect play.
+     */
+    public static final int WIN = 3;
+
+    /**
+     * The largest number of cells a tablebase can cover.
+     */
+    public static final int MAX_CELLS = 16;
+
+    private static final int MAGIC = 0x54545442;
+
+    private static final int HEADER_BYTES = Integer.BYTES + 2;
+
+    private static final int VALUE_BITS = 2;
+
+    private static final int VALUES_PER_BYTE_SHIFT = 2;
+
+    private static final int VALUE_MASK = 3;
+
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+
+    private static final String FILE_FORMAT = "tablebase-%d-%d.bin";
+
+    private static final String PARTIAL_SUFFIX = ".partial";
+
+    private static final Map<String, Tablebase> LOADED = new HashMap<>();
+
+    private final int size;
+
+    private final int winStreak;
+
+    private final int[] powers;
+
+    private final ByteBuffer values;
+
+    private final int offset;
+
+    /**
+     * Constructs a Tablebase over a buffer of packed values.
+     *
+     * @param size      The size of the board.
+     * @param winStreak The streak length required for a win.
+     * @param values    The buffer holding the packed values.
+     * @param offset    The position of the first value byte in the buffer.
+     */
+    private Tablebase(int size, int winStreak, ByteBuffer values, int offset) {
+        this.size = size;
+        this.winStreak = winStreak;
+        this.values = values;
+        this.offset = offset;
+        this.powers = new int[size * size];
+        int power = 1;
+        for (int cell = 0; cell < powers.length; cell++) {
+            powers[cell] = power;
+            power *= Mark.values().length;
+        }
+    }
+
+    /**
+     * Solves every position reachable on a board.
+     *
+     * @param size      The size of the board, with at most MAX_CELLS cells.
+     * @param winStreak The streak length required for a win.
+     * @return The solved tablebase.
+     */
+
+    public static Tablebase solve(int size, int winStreak) {
+        if (size * size > MAX_CELLS) {
+            throw new IllegalArgumentException("Board too large for a tablebase: " + size);
+        }
+        ByteBuffer values = ByteBuffer.allocate(valueBytes(size));
+        Tablebase tablebase = new Tablebase(size, winStreak, values, 0);
+        new Solver(tablebase).solve(0, Mark.X.ordinal(), size * size);
+        return tablebase;
+    }
+
+    /**
+     * Retrieves the tablebase of a board from a directory, loading it once per run. A missing
+     * tablebase is solved and written to the directory first, under a temporary name that is
+     * renamed once the file is complete.
+     *
+     * @param directory The directory holding the tablebase files.
+     * @param size      The size of the board, with at most MAX_CELLS cells.
+     * @param winStreak The streak length required for a win.
+     * @return The tablebase.
+     * @throws IOException If the tablebase cannot be read or written.
+     */
+
+    public static synchronized Tablebase forBoard(String directory, int size, int winStreak)
+            throws IOException {
+        Path path = Paths.get(directory, String.format(FILE_FORMAT, size, winStreak));
+        String key = path.toAbsolutePath().toString();
+        Tablebase tablebase = LOADED.get(key);
+        if (tablebase == null) {
+            if (!Files.exists(path)) {
+                Path partial = Paths.get(path + PARTIAL_SUFFIX);
+                solve(size, winStreak).write(partial.toString());
+                Files.move(partial, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            tablebase = load(path.toString());
+            LOADED.put(key, tablebase);
+        }
+        return tablebase;
+    }
+
+    /**
+     * Memory-maps a tablebase file.
+     *
+     * @param path The path of the file.
+     * @return The tablebase.
+     * @throws IOException If the file cannot be read, is not a tablebase, or is cut short.
+     */
+
+    public static Tablebase load(String path) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a tablebase: " + path);
+        }
+        int size = buffer.get(Integer.BYTES);
+        int winStreak = buffer.get(Integer.BYTES + 1);
+        if (size < 1 || size * size > MAX_CELLS || winStreak < 1 || winStreak > size
+                || buffer.limit() != HEADER_BYTES + valueBytes(size)) {
+            throw new IOException("Corrupt or incomplete tablebase: " + path);
+        }
+        return new Tablebase(size, winStreak, buffer, HEADER_BYTES);
+    }
+
+    /**
+     * Computes the number of bytes the packed values of a board take.
+     *
+     * @param size The size of the board, with at most MAX_CELLS cells.
+     * @return The number of value bytes.
+     */
+
+    private static int valueBytes(int size) {
+        int positions = 1;
+        for (int cell = 0; cell < size * size; cell++) {
+            positions *= Mark.values().length;
+        }
+        return (positions >>> VALUES_PER_BYTE_SHIFT) + 1;
+    }
+
+    /**
+     * Writes the tablebase to a file.
+     *
+     * @param path The path of the file.
+     * @throws IOException If the file cannot be written.
+     */
+
+    public void write(String path) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).put((byte) size).put((byte) winStreak).flip();
+        ByteBuffer body = values.duplicate();
+        body.position(offset);
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            while (body.hasRemaining()) {
+                channel.write(body);
+            }
+        }
+    }
+
+    /**
+     * Retrieves the size of the board the tablebase covers.
+     *
+     * @return The size of the board.
+     */
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Retrieves the win streak of the board the tablebase covers.
+     *
+     * @return The streak length required for a win.
+     */
+
+    public int getWinStreak() {
+        return winStreak;
+    }
+
+    /**
+     * Computes the index of the position on a board.
+     *
+     * @param board The board, of the size the tablebase covers.
+     * @return The index of the position.
+     */
+
+    public int indexOf(Board board) {
+        int index = 0;
+        for (int cell = 0; cell < powers.length; cell++) {
+            index += board.getMark(cell / size, cell % size).ordinal() * powers[cell];
+        }
+        return index;
+    }
+
+    /**
+     * Computes the index of the position after a mark is put on a blank cell.
+     *
+     * @param index The index of the position.
+     * @param cell  The index of the blank cell.
+     * @param mark  The mark put on the cell.
+     * @return The index of the following position.
+     */
+
+    public int childIndex(int index, int cell, Mark mark) {
+        return index + mark.ordinal() * powers[cell];
+    }
+
+    /**
+     * Looks up the value of a position.
+     *
+     * @param index The index of the position.
+     * @return WIN, DRAW or LOSS for the player to move, or UNKNOWN if it cannot be reached.
+     */
+
+    public int getValue(int index) {
+        int packed = values.get(offset + (index >>> VALUES_PER_BYTE_SHIFT));
+        return (packed >>> ((index & VALUE_MASK) * VALUE_BITS)) & VALUE_MASK;
+    }
+
+    /**
+     * Stores the value of a position while solving.
+     *
+     * @param index The index of the position.
+     * @param value WIN, DRAW or LOSS for the player to move.
+     */
+
+    private void setValue(int index, int value) {
+        int position = offset + (index >>> VALUES_PER_BYTE_SHIFT);
+        int shift = (index & VALUE_MASK) * VALUE_BITS;
+        int packed = values.get(position) & ~(VALUE_MASK << shift);
+        values.put(position, (byte) (packed | value << shift));
+    }
+
+    /**
+     * The Solver class searches every position reachable from the empty board, storing the value
+     * of each position in the tablebase the first time it is solved.
+     */
+
+    private static class Solver {
+
+        private final Tablebase tablebase;
+
+        private final int size;
+
+        private final byte[] cells;
+
+        /**
+         * Constructs a solver for a tablebase.
+         *
+         * @param tablebase The tablebase to fill.
+         */
+        Solver(Tablebase tablebase) {
+            this.tablebase = tablebase;
+            this.size = tablebase.size;
+            this.cells = new byte[size * size];
+        }
+
+        /**
+         * Solves a position and all the positions reachable from it.
+         *
+         * @param index  The index of the position.
+         * @param side   The ordinal of the mark to move.
+         * @param blanks The number of blank cells.
+         * @return The value of the position for the player to move.
+         */
+
+        int solve(int index, int side, int blanks) {
+            int stored = tablebase.getValue(index);
+            if (stored != UNKNOWN) {
+                return stored;
+            }
+            int best = LOSS;
+            for (int cell = 0; cell < cells.length; cell++) {
+                if (cells[cell] != 0) {
+                    continue;
+                }
+                cells[cell] = (byte) side;
+                int child = index + side * tablebase.powers[cell];
+                int value;
+                if (isWinningMove(cell, side)) {
+                    tablebase.setValue(child, LOSS);
+                    value = WIN;
+                } else if (blanks == 1) {
+                    tablebase.setValue(child, DRAW);
+                    value = DRAW;
+                } else {
+                    value = WIN + LOSS - solve(child, Mark.X.ordinal() + Mark.O.ordinal() - side,
+                            blanks - 1);
+                }
+                cells[cell] = 0;
+                best = Math.max(best, value);
+            }
+            tablebase.setValue(index, best);
+            return best;
+        }
+
+        /**
+         * Checks whether the mark on a cell completes a streak.
+         *
+         * @param cell The index of the cell.
+         * @param side The ordinal of the mark on the cell.
+         * @return True if the mark completes a streak of winStreak marks.
+         */
+
+        private boolean isWinningMove(int cell, int side) {
+            int row = cell / size;
+            int col = cell % size;
+            for (int[] direction : DIRECTIONS) {
+                int streak = 1 + countSide(row, col, direction[0], direction[1], side)
+                        + countSide(row, col, -direction[0], -direction[1], side);
+                if (streak >= tablebase.winStreak) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Counts the marks of a side next to a cell in one direction.
+         *
+         * @param row      The row index of the cell.
+         * @param col      The column index of the cell.
+         * @param rowDelta The row step of the direction.
+         * @param colDelta The column step of the direction.
+         * @param side     The ordinal of the mark.
+         * @return The number of consecutive marks of the side.
+         */
+
+        private int countSide(int row, int col, int rowDelta, int colDelta, int side) {
+            int count = 0;
+            row += rowDelta;
+            col += colDelta;
+            while (row >= 0 && row < size && col >= 0 && col < size
+                    && cells[row * size + col] == side) {
+                count++;
+                row += rowDelta;
+                col += colDelta;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Solves the positions of a board and writes the tablebase to a file.
+     *
+     * @param args Command-line arguments: the board size, the win streak and the output path.
+     * @throws IOException If the file cannot be written.
+     */
+
+    public static void main(String[] args) throws IOException {
+        int size = Integer.parseInt(args[0]);
+        int winStreak = Integer.parseInt(args[1]);
+        Tablebase tablebase = solve(size, winStreak);
+        tablebase.write(args[2]);
+        int value = tablebase.getValue(0);
+        System.out.println("Empty board: " + (value == WIN ? "X wins"
+                : value == LOSS ? "O wins" : "draw"));
+    }
+}
@@ -0,0 +1,140 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * The TablebasePlayer class implements the Player interface with perfect play on small boards.
+ * It looks every move up in the tablebase of the board, loading it from a directory or solving it
+ * the first time the board is seen. A solved tablebase is written to that directory, which is
+ * the working directory unless "tablebase=" names another, and takes up to about 10MB on a
+ * 4x4 board. A winning move is taken at once, otherwise the move leading
+ * to the position worst for the opponent.
+ * Boards with more than Tablebase.MAX_CELLS cells have no tablebase, and are played by a
+ * SearchPlayer instead.
+ */
+
+public class TablebasePlayer implements Player {
+
+    private final String directory;
+
+    private final Player fallback;
+
+    private Tablebase tablebase;
+
+    /**
+     * Constructs a TablebasePlayer.
+     *
+     * @param directory The directory holding the tablebase files.
+     * @param fallback  The player moving on boards too large for a tablebase.
+     */
+    public TablebasePlayer(String directory, Player fallback) {
+        this.directory = directory;
+        this.fallback = fallback;
+    }
+
+    /**
+     * Plays a turn on the board by looking up the value of every move.
+     *
+     * @param board The board on which the move is to be made.
+     * @param mark  The mark (X or O) associated with the player.
+     */
+
+    @Override
+    public void playTurn(Board board, Mark mark) {
+        int size = board.getSize();
+        if (size * size > Tablebase.MAX_CELLS) {
+            fallback.playTurn(board, mark);
+            return;
+        }
+        if (tablebase == null || tablebase.getSize() != size
+                || tablebase.getWinStreak() != board.getWinStreak()) {
+            try {
+                tablebase = Tablebase.forBoard(directory, size, board.getWinStreak());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        int index = tablebase.indexOf(board);
+        int bestCell = -1;
+        int bestValue = Tablebase.UNKNOWN;
+        for (int cell = 0; cell < size * size; cell++) {
+            int row = cell / size;
+            int col = cell % size;
+            if (board.getMark(row, col) != Mark.BLANK) {
+                continue;
+            }
+            int childValue = tablebase.getValue(tablebase.childIndex(index, cell, mark));
+            int value = childValue == Tablebase.UNKNOWN
+                    ? Tablebase.DRAW : Tablebase.WIN + Tablebase.LOSS - childValue;
+            if (childValue == Tablebase.LOSS && winsAt(board, mark, row, col)) {
+                bestCell = cell;
+                break;
+            }
+            if (value > bestValue) {
+                bestValue = value;
+                bestCell = cell;
+            }
+        }
+        if (bestCell >= 0) {
+            board.putMark(mark, bestCell / size, bestCell % size);
+        }
+    }
+
+    /**
+     * Plays a turn on the board within a time budget. A tablebase lookup is immediate, so only
+     * the fallback player on large boards is given the deadline.
+     *
+     * @param board         The board on which the move is to be made.
+     * @param mark          The mark (X or O) associated with the player.
+     * @param deadlineNanos The System.nanoTime value by which the move has to be made.
+     */
+
+    @Override
+    public void playTurn(Board board, Mark mark, long deadlineNanos) {
+        int size = board.getSize();
+        if (size * size > Tablebase.MAX_CELLS) {
+            fallback.playTurn(board, mark, deadlineNanos);
+        } else {
+            playTurn(board, mark);
+        }
+    }
+
+    /**
+     * Lets the fallback player ponder on boards too large for a tablebase.
+     *
+     * @param board The board after the player's move.
+     * @param mark  The mark (X or O) associated with the player.
+     */
+
+    @Override
+    public void startPondering(Board board, Mark mark) {
+        if (board.getSize() * board.getSize() > Tablebase.MAX_CELLS) {
+            fallback.startPondering(board, mark);
+        }
+    }
+
+    /**
+     * Lets the fallback player stop pondering.
+     */
+
+    @Override
+    public void stopPondering() {
+        fallback.stopPondering();
+    }
+
+    /**
+     * Checks whether a mark on a blank cell would win the game at once.
+     *
+     * @param board The board.
+     * @param mark  The mark of the player.
+     * @param row   The row index of the blank cell.
+     * @param col   The column index of the blank cell.
+     * @return True if the move completes a streak.
+     */
+
+    private static boolean winsAt(Board board, Mark mark, int row, int col) {
+        board.putMark(mark, row, col);
+        boolean wins = board.completesStreak(row, col);
+        board.unmakeMove();
+        return wins;
+    }
+}
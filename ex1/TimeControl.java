@@ -0,0 +1,87 @@
+/**
+ * The TimeControl class holds the time limits of a game: a limit on every single move and a
+ * clock each player spends over the whole game, either of which may be unlimited. It also tells
+ * what happens to a player who overruns its time: it forfeits the game, or its move is replaced
+ * by a fallback move.
+ */
+
+public class TimeControl {
+
+    /**
+     * A player who overruns its time loses the game.
+     */
+    public static final int FORFEIT = 0;
+
+    /**
+     * The move of a player who overruns its time is replaced by the first blank cell, row by row.
+     */
+    public static final int FIRST_BLANK = 1;
+
+    /**
+     * The move of a player who overruns its time is replaced by a random blank cell.
+     */
+    public static final int RANDOM_BLANK = 2;
+
+    /**
+     * The value of a limit that does not apply.
+     */
+    public static final long UNLIMITED = 0;
+
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+
+    private final long moveNanos;
+
+    private final long gameNanos;
+
+    private final int overrunPolicy;
+
+    /**
+     * Constructs a TimeControl.
+     *
+     * @param moveMillis    The limit of every move in milliseconds, or UNLIMITED.
+     * @param gameMillis    The clock of each player for the whole game in milliseconds,
+     *                      or UNLIMITED.
+     * @param overrunPolicy FORFEIT, FIRST_BLANK or RANDOM_BLANK.
+     */
+    public TimeControl(long moveMillis, long gameMillis, int overrunPolicy) {
+        this.moveNanos = moveMillis * NANOS_PER_MILLI;
+        this.gameNanos = gameMillis * NANOS_PER_MILLI;
+        this.overrunPolicy = overrunPolicy;
+    }
+
+    /**
+     * Retrieves the clock each player starts a game with.
+     *
+     * @return The clock in nanoseconds, or UNLIMITED.
+     */
+
+    public long getGameNanos() {
+        return gameNanos;
+    }
+
+    /**
+     * Retrieves what happens to a player who overruns its time.
+     *
+     * @return FORFEIT, FIRST_BLANK or RANDOM_BLANK.
+     */
+
+    public int getOverrunPolicy() {
+        return overrunPolicy;
+    }
+
+    /**
+     * Computes the time a player may spend on its next move.
+     *
+     * @param clockNanos The time left on the player's clock, ignored if the game is not clocked.
+     * @return The time budget of the move in nanoseconds, never negative, or Long.MAX_VALUE if
+     * the move is not limited.
+     */
+
+    public long getMoveBudget(long clockNanos) {
+        long budget = moveNanos == UNLIMITED ? Long.MAX_VALUE : moveNanos;
+        if (gameNanos != UNLIMITED) {
+            budget = Math.min(budget, Math.max(0, clockNanos));
+        }
+        return budget;
+    }
+}
@@ -1,7 +1,28 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * The Tournament class represents a series games played between two players
  * over a specified number of rounds. It tracks the wins for each player and ties, and prints
  * the tournament results at the end.
+ * The rounds can be spread over several worker threads, each with its own pair of players,
+ * while the results keep the sequential semantics of alternating who plays X.
+ * In headless mode the results are written as machine-readable CSV or JSON summaries instead,
+ * streamed every given number of rounds while the tournament runs.
+ * The games can also be recorded to a binary game log, to be analyzed later with GameLog, and the
+ * turns of the players can be timed, to report latency percentiles per player type at the end.
+ * With a sequential probability ratio test, the tournament stops as soon as the results decide
+ * whether player 1 is stronger than player 2 by the hypothesized Elo difference.
  */
 
 public class Tournament {
@@ -12,11 +33,43 @@ public class Tournament {
 
     private final Player player2;
 
-    private int player1Wins = 0;
+    private final TournamentStatistics statistics = new TournamentStatistics();
+
+    private final TournamentOptions options;
+
+    private final PrintStream out;
+
+    private StatisticsWriter statisticsWriter;
+
+    private GameRecorder gameRecorder;
+
+    private String player1Name;
+
+    private String player2Name;
+
+    private long startNanos;
+
+    private long nextSummary;
+
+    private SequentialTest sequentialTest;
 
-    private int player2Wins = 0;
+    private int sequentialOutcome = SequentialTest.CONTINUE;
 
-    private int tiesCounter = 0;
+    private TimeControl timeControl;
+
+    private volatile boolean stopped = false;
+
+    private final List<InstrumentedPlayer> instrumentedPlayers = new ArrayList<>();
+
+    private final static int BATCH_ROUNDS = 1024;
+
+    private final static int OPTIONS_INDEX = 6;
+
+    private final static double NANOS_PER_MICRO = 1e3;
+
+    private final static String TURN_HEADER_FORMAT = "%-10s %12s %12s %12s %12s %12s %12s%n";
+
+    private final static String TURN_ROW_FORMAT = "%-10s %12d %12d %12.1f %12.1f %12.1f %12s%n";
 
 
     /**
@@ -29,10 +82,45 @@ public class Tournament {
      */
 
     public Tournament(int rounds, Renderer renderer, Player player1, Player player2) {
+        this(rounds, renderer, player1, player2, new TournamentOptions());
+    }
+
+    /**
+     * Constructs a Tournament with optional settings. When the options ask for several workers,
+     * the given players are used by the first worker and the other workers build their own
+     * players of the same types.
+     *
+     * @param rounds   The number of rounds in the tournament.
+     * @param renderer The renderer for displaying the game board.
+     * @param player1  The first player participating in the tournament.
+     * @param player2  The second player participating in the tournament.
+     * @param options  The optional settings of the tournament.
+     */
+
+    public Tournament(int rounds, Renderer renderer, Player player1, Player player2,
+                      TournamentOptions options) {
+        this(rounds, renderer, player1, player2, options, System.out);
+    }
+
+    /**
+     * Constructs a Tournament with optional settings that prints its results to a stream.
+     *
+     * @param rounds   The number of rounds in the tournament.
+     * @param renderer The renderer for displaying the game board.
+     * @param player1  The first player participating in the tournament.
+     * @param player2  The second player participating in the tournament.
+     * @param options  The optional settings of the tournament.
+     * @param out      The stream the results and error messages are printed to.
+     */
+
+    public Tournament(int rounds, Renderer renderer, Player player1, Player player2,
+                      TournamentOptions options, PrintStream out) {
+        this.out = out;
         this.rounds = rounds;
         this.renderer = renderer;
         this.player1 = player1;
         this.player2 = player2;
+        this.options = options;
     }
 
     /**
@@ -46,49 +134,282 @@ public class Tournament {
 
     public void playTournament(int size, int winStreak,
                                String playerName1, String playerName2) {
-        for (int round = 0; round < rounds; round++) {
-            Game game;
-            if (round % 2 == 0) {
-                game = new Game(player1, player2, size, winStreak, renderer);
-                gameWinCheck(game.run(), true);
-
-            } else {
-                game = new Game(player2, player1, size, winStreak, renderer);
-                gameWinCheck(game.run(), false);
+        if (options.getStatsFormat() != null) {
+            try {
+                statisticsWriter = StatisticsWriter.open(options.getStatsFormat(),
+                        options.getOutputPath());
+            } catch (IOException e) {
+                out.println(Constants.UNWRITABLE_OUTPUT);
+                return;
+            }
+        }
+        if (options.getRecordPath() != null) {
+            try {
+                gameRecorder = new GameRecorder(options.getRecordPath());
+            } catch (IOException e) {
+                out.println(Constants.UNWRITABLE_OUTPUT);
+                return;
             }
         }
-        printTournamentResult(playerName1, playerName2);
+        player1Name = playerName1;
+        player2Name = playerName2;
+        nextSummary = options.getSummaryInterval();
+        sequentialTest = options.createSequentialTest();
+        timeControl = options.createTimeControl();
+        startNanos = System.nanoTime();
+        if (canPlayInParallel()) {
+            playParallel(size, winStreak, playerName1, playerName2);
+        } else {
+            Player first = instrument(player1, playerName1);
+            Player second = instrument(player2, playerName2);
+            Game[] games = createGames(first, second, size, winStreak);
+            for (int round = 0; round < rounds && !stopped; round++) {
+                playRound(round, games, statistics);
+                if (sequentialTest != null) {
+                    checkSequentialTest();
+                }
+                if (statisticsWriter != null) {
+                    writeProgress();
+                }
+            }
+        }
+        if (gameRecorder != null) {
+            gameRecorder.close();
+        }
+        if (statisticsWriter != null) {
+            writeSummary(true);
+            statisticsWriter.close();
+        } else {
+            printTournamentResult(playerName1, playerName2);
+        }
+        if (options.getProfileInterval() > 0) {
+            boolean stdoutTaken = statisticsWriter != null && options.getOutputPath() == null;
+            printTurnReport(stdoutTaken ? System.err : out);
+        }
     }
 
 
     /**
-     * Checks the result of a game and updates the counters for wins and ties accordingly.
+     * Wraps a player in an InstrumentedPlayer when its turns are profiled or emitted as JFR
+     * events.
      *
-     * @param mark   The mark of the winner ('X', 'O') or 'BLANK' for a tie.
-     * @param Parity True if it's player is Mark.x, False -  otherwise.
+     * @param player The player.
+     * @param type   The player type string.
+     * @return The instrumented player, or the player itself if it is not instrumented.
      */
 
-    private void gameWinCheck(Mark mark, boolean Parity) {
-        if (mark == Mark.BLANK) {
-            this.tiesCounter++;
+    private synchronized Player instrument(Player player, String type) {
+        if (options.getProfileInterval() == 0 && !options.isJfrEnabled()) {
+            return player;
+        }
+        int interval = options.getProfileInterval() > 0 ? options.getProfileInterval()
+                : Integer.MAX_VALUE;
+        InstrumentedPlayer instrumented =
+                new InstrumentedPlayer(player, type, interval, options.isJfrEnabled());
+        instrumentedPlayers.add(instrumented);
+        return instrumented;
+    }
+
+
+    /**
+     * Checks whether the rounds may be spread over several workers. Games that are rendered
+     * or played by a human must stay on a single thread.
+     *
+     * @return True if the tournament should run in parallel, false otherwise.
+     */
+
+    private boolean canPlayInParallel() {
+        return options.getWorkers() > 1 && renderer instanceof VoidRenderer
+                && !(player1 instanceof HumanPlayer) && !(player2 instanceof HumanPlayer);
+    }
+
+
+    /**
+     * Plays the rounds on a pool of worker threads. Every worker repeatedly claims a batch of
+     * consecutive rounds, so each worker's players still alternate between X and O.
+     *
+     * @param size        The size of the game board.
+     * @param winStreak   The streak length required for a win.
+     * @param playerName1 The name of player 1.
+     * @param playerName2 The name of player 2.
+     */
 
-        } else if (Parity) {
-            if (mark == Mark.X) {
-                player1Wins++;
-            } else {
-                player2Wins++;
+    private void playParallel(int size, int winStreak, String playerName1, String playerName2) {
+        int workers = options.getWorkers();
+        PlayerFactory playerFactory = new PlayerFactory(options);
+        AtomicLong nextRound = new AtomicLong();
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int worker = 0; worker < workers; worker++) {
+            Player first = instrument(worker == 0 ? player1
+                    : playerFactory.buildPlayer(playerName1), playerName1);
+            Player second = instrument(worker == 0 ? player2
+                    : playerFactory.buildPlayer(playerName2), playerName2);
+            tasks.add(pool.submit(() -> playBatches(nextRound, first, second, size, winStreak)));
+        }
+        pool.shutdown();
+        try {
+            for (Future<?> task : tasks) {
+                task.get();
             }
-        } else {
-            if (mark == Mark.X) {
-                player2Wins++;
-            } else {
-                player1Wins++;
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            pool.shutdownNow();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
 
+
+    /**
+     * Plays batches of rounds on a single worker until all the rounds are claimed or the
+     * sequential test has decided, adding the results of each batch to the tournament counters.
+     *
+     * @param nextRound The index of the next round no worker has claimed yet.
+     * @param first     The worker's instance of player 1.
+     * @param second    The worker's instance of player 2.
+     * @param size      The size of the game board.
+     * @param winStreak The streak length required for a win.
+     */
+
+    private void playBatches(AtomicLong nextRound, Player first, Player second,
+                             int size, int winStreak) {
+        TournamentStatistics results = new TournamentStatistics();
+        Game[] games = createGames(first, second, size, winStreak);
+        while (!stopped) {
+            long firstRound = nextRound.getAndAdd(BATCH_ROUNDS);
+            if (firstRound >= rounds) {
+                return;
+            }
+            int lastRound = (int) Math.min(rounds, firstRound + BATCH_ROUNDS);
+            for (int round = (int) firstRound; round < lastRound; round++) {
+                playRound(round, games, results);
             }
+            addResults(results);
+            results.clear();
         }
     }
 
 
+    /**
+     * Creates the two games a worker alternates between: player 1 as X, then player 1 as O.
+     * They share one board, which every round clears instead of allocating a new one.
+     *
+     * @param first     The instance of player 1 to play with.
+     * @param second    The instance of player 2 to play with.
+     * @param size      The size of the game board.
+     * @param winStreak The streak length required for a win.
+     * @return The game with player 1 as X at index 0, and as O at index 1.
+     */
+
+    private Game[] createGames(Player first, Player second, int size, int winStreak) {
+        Game game = new Game(first, second, size, winStreak, renderer, timeControl);
+        return new Game[]{game, new Game(game)};
+    }
+
+
+    /**
+     * Plays a single round and counts its result. Player 1 plays X in even rounds and O in
+     * odd rounds.
+     *
+     * @param round   The index of the round.
+     * @param games   The games of the worker, as created by createGames.
+     * @param results The statistics the result is counted in.
+     */
+
+    private void playRound(int round, Game[] games, TournamentStatistics results) {
+        boolean player1IsX = round % 2 == 0;
+        Game game = games[round % 2];
+        game.reset();
+        Mark winner = game.run();
+        if (gameRecorder != null) {
+            gameRecorder.record(game, winner);
+        }
+        int result = gameWinCheck(winner, player1IsX);
+        results.addRound(player1IsX, result, game.getMoveCount());
+    }
+
+
+    /**
+     * Checks the result of a game and tells which counter it belongs to.
+     *
+     * @param mark   The mark of the winner ('X', 'O') or 'BLANK' for a tie.
+     * @param Parity True if it's player is Mark.x, False -  otherwise.
+     * @return The kind of the result: PLAYER1_WIN, PLAYER2_WIN or TIE.
+     */
+
+    private int gameWinCheck(Mark mark, boolean Parity) {
+        return TournamentStatistics.resultOf(mark, Parity);
+    }
+
+
+    /**
+     * Adds the results counted by a worker to the tournament statistics. In a parallel
+     * tournament the sequential test is checked once per batch.
+     *
+     * @param results The statistics of the rounds of a batch.
+     */
+
+    private synchronized void addResults(TournamentStatistics results) {
+        statistics.add(results);
+        if (sequentialTest != null) {
+            checkSequentialTest();
+        }
+        if (statisticsWriter != null) {
+            writeProgress();
+        }
+    }
+
+
+    /**
+     * Checks the sequential test against the results so far, and stops the tournament once one
+     * of its hypotheses is accepted.
+     */
+
+    private synchronized void checkSequentialTest() {
+        if (stopped) {
+            return;
+        }
+        sequentialOutcome = sequentialTest.check(
+                statistics.getCount(TournamentStatistics.PLAYER1_WIN),
+                statistics.getCount(TournamentStatistics.TIE),
+                statistics.getCount(TournamentStatistics.PLAYER2_WIN));
+        if (sequentialOutcome != SequentialTest.CONTINUE) {
+            stopped = true;
+        }
+    }
+
+
+    /**
+     * Writes a summary of the rounds played so far whenever another summary interval of rounds
+     * has been played.
+     */
+
+    private synchronized void writeProgress() {
+        long interval = options.getSummaryInterval();
+        if (interval == 0 || statistics.getRounds() < nextSummary) {
+            return;
+        }
+        writeSummary(false);
+        while (nextSummary <= statistics.getRounds()) {
+            nextSummary += interval;
+        }
+    }
+
+
+    /**
+     * Writes a machine-readable summary of the rounds played so far.
+     *
+     * @param isFinal True for the summary of the whole tournament, false otherwise.
+     */
+
+    private synchronized void writeSummary(boolean isFinal) {
+        statisticsWriter.writeSummary(statistics, player1Name, player2Name,
+                System.nanoTime() - startNanos, isFinal, sequentialTest, sequentialOutcome);
+    }
+
+
     /**
      * Prints the final results of the tournament, including the number of wins for each player
      * and the number of tied games.
@@ -96,41 +417,92 @@ public class Tournament {
      * @param player1Name The name of player 1.
      * @param player2Name The name of player 2.
      */
-    private void printTournamentResult(String player1Name, String player2Name) {
-        System.out.println("######### Results #########");
-        System.out.println("Player 1, " + player1Name + " won: " + this.player1Wins + " rounds");
-        System.out.println("Player 2, " + player2Name + " won: " + this.player2Wins + " rounds");
-        System.out.println("Ties: " + this.tiesCounter);
+    private synchronized void printTournamentResult(String player1Name, String player2Name) {
+        out.println("######### Results #########");
+        out.println("Player 1, " + player1Name + " won: "
+                + statistics.getCount(TournamentStatistics.PLAYER1_WIN) + " rounds");
+        out.println("Player 2, " + player2Name + " won: "
+                + statistics.getCount(TournamentStatistics.PLAYER2_WIN) + " rounds");
+        out.println("Ties: " + statistics.getCount(TournamentStatistics.TIE));
+        if (sequentialTest != null) {
+            out.println(sequentialTest.describe(sequentialOutcome) + " after "
+                    + statistics.getRounds() + " rounds");
+        }
+    }
+
+    /**
+     * Prints the turn latencies of every player type: the number of turns and of timed turns,
+     * the median, 99th percentile and longest turn, and the bytes allocated per timed turn.
+     *
+     * @param out The stream the report is printed to.
+     */
+    private synchronized void printTurnReport(PrintStream out) {
+        Map<String, TurnHistogram> histograms = new LinkedHashMap<>();
+        for (InstrumentedPlayer player : instrumentedPlayers) {
+            histograms.computeIfAbsent(player.getType(), type -> new TurnHistogram())
+                    .add(player.getHistogram());
+        }
+        out.println("######### Turns #########");
+        out.printf(Locale.ROOT, TURN_HEADER_FORMAT, "player", "turns", "sampled", "p50 us",
+                "p99 us", "max us", "bytes/turn");
+        for (Map.Entry<String, TurnHistogram> entry : histograms.entrySet()) {
+            TurnHistogram histogram = entry.getValue();
+            double bytes = histogram.getBytesPerTurn();
+            out.printf(Locale.ROOT, TURN_ROW_FORMAT, entry.getKey(), histogram.getTurns(),
+                    histogram.getSamples(), histogram.getPercentileNanos(50) / NANOS_PER_MICRO,
+                    histogram.getPercentileNanos(99) / NANOS_PER_MICRO,
+                    histogram.getMaxNanos() / NANOS_PER_MICRO,
+                    bytes < 0 ? "n/a" : String.format(Locale.ROOT, "%.1f", bytes));
+        }
     }
 
     /**
      * The main method for running the Tic Tac Toe tournament. It accepts command-line arguments
-     * for the number of rounds, board size, win streak, renderer type, and player types.
+     * for the number of rounds, board size, win streak, renderer type, and player types,
+     * optionally followed by name=value options such as workers=8 or stats=csv.
      *
      * @param args Command-line arguments.
      */
 
 
     public static void main(String[] args) {
+        play(args, System.out);
+    }
+
+    /**
+     * Runs a tournament given by the command-line arguments of main, printing its results and
+     * any error message to a stream.
+     *
+     * @param args Command-line arguments, as given to main.
+     * @param out  The stream the results are printed to.
+     */
+
+    public static void play(String[] args, PrintStream out) {
         int rounds = Integer.parseInt(args[0]);
         int size = Integer.parseInt(args[1]);
         int winStreak = Integer.parseInt(args[2]);
         RendererFactory rendererFactory = new RendererFactory();
         Renderer renderer = rendererFactory.buildRenderer(args[3], size);
 
-        PlayerFactory playerFactory = new PlayerFactory();
+        TournamentOptions options = TournamentOptions.parse(args, OPTIONS_INDEX);
+        if (options == null) {
+            out.println(Constants.UNKNOWN_OPTION);
+            return;
+        }
+
+        PlayerFactory playerFactory = new PlayerFactory(options);
         Player player1 = playerFactory.buildPlayer(args[4]);
         Player player2 = playerFactory.buildPlayer(args[5]);
 
         if (renderer == null) {
-            System.out.println(Constants.UNKNOWN_RENDERER_NAME);
+            out.println(Constants.UNKNOWN_RENDERER_NAME);
             return;
         }
         if (player1 == null || player2 == null) {
-            System.out.println(Constants.UNKNOWN_PLAYER_NAME);
+            out.println(Constants.UNKNOWN_PLAYER_NAME);
             return;
         }
-        Tournament tournament = new Tournament(rounds, renderer, player1, player2);
+        Tournament tournament = new Tournament(rounds, renderer, player1, player2, options, out);
         tournament.playTournament(size, winStreak, args[4].toLowerCase(), args[5].toLowerCase());
     }
 
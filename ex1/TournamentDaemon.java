@@ -0,0 +1,330 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The TournamentDaemon class keeps a JVM running and plays the tournament jobs sent to it, so a
+ * pipeline running many short tournaments pays for the JVM startup and the JIT warm-up once.
+ * A job is a line holding the arguments of Tournament.main, e.g. "1000 4 3 none clever genius
+ * workers=2". Jobs are read from the standard input, or from connections to a port on the
+ * loopback address, and are played on a fixed pool of threads.
+ * Every line a job prints is sent back prefixed by the number of the job in its session,
+ * followed by a "done" line with the time the job took in milliseconds, or by a single "error"
+ * line. The lines of a job are sent together, and jobs are answered in the order they finish.
+ * An empty line is ignored, and "quit" ends the session once its jobs are answered.
+ */
+
+public class TournamentDaemon {
+
+    private final static String SEPARATOR = "=";
+    private final static String PORT = "port";
+    private final static String JOBS = "jobs";
+    private final static String QUIT = "quit";
+    private final static String DONE = "done";
+    private final static String ERROR = "error";
+    private final static String ARGUMENT_SEPARATOR = "\\s+";
+    private final static String LINE_SEPARATOR = "\\R";
+    private final static String NO_RENDERER = "none";
+    private final static String HUMAN = "human";
+    private final static String STATS_OPTION = "stats=";
+    private final static String OUT_OPTION = "out=";
+
+    private final static int TOURNAMENT_ARGUMENTS = 6;
+
+    private final static int RENDERER_INDEX = 3;
+
+    private final static int OPTIONS_INDEX = 6;
+
+    private final static int NO_PORT = -1;
+
+    private final static long NANOS_PER_MILLI = 1_000_000L;
+
+    private final ExecutorService pool;
+
+    /**
+     * Constructs a TournamentDaemon.
+     *
+     * @param jobs The number of jobs played at the same time.
+     */
+    public TournamentDaemon(int jobs) {
+        this.pool = Executors.newFixedThreadPool(jobs);
+    }
+
+    /**
+     * Reads jobs from a reader until it ends or a "quit" line, and waits until all of them are
+     * answered.
+     *
+     * @param in  The reader the job lines are read from.
+     * @param out The stream the answers are written to.
+     * @throws IOException If the jobs cannot be read.
+     */
+
+    public void serve(BufferedReader in, PrintStream out) throws IOException {
+        Session session = new Session(out);
+        try {
+            long jobNumber = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.equals(QUIT)) {
+                    break;
+                }
+                if (line.isEmpty()) {
+                    continue;
+                }
+                long job = ++jobNumber;
+                String jobLine = line;
+                session.startJob();
+                pool.execute(() -> playJob(session, job, jobLine));
+            }
+        } finally {
+            session.awaitJobs();
+        }
+    }
+
+    /**
+     * Accepts connections on a port of the loopback address, serving each connection as a
+     * session of its own on a new thread. It never returns unless the port cannot be listened on.
+     *
+     * @param port The port to listen on.
+     * @throws IOException If the port cannot be listened on.
+     */
+
+    public void listen(int port) throws IOException {
+        try (ServerSocket server = new ServerSocket(port, 0, InetAddress.getLoopbackAddress())) {
+            while (true) {
+                Socket socket = server.accept();
+                Thread thread = new Thread(() -> serveConnection(socket));
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+    }
+
+    /**
+     * Stops the pool once the jobs already sent are played.
+     */
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Serves a single connection, closing it when its session ends.
+     *
+     * @param socket The connection.
+     */
+
+    private void serveConnection(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(
+                     socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintStream out = new PrintStream(socket.getOutputStream(), false,
+                     StandardCharsets.UTF_8)) {
+            serve(in, out);
+        } catch (IOException e) {
+            // The client went away; its remaining answers have nowhere to go.
+        }
+    }
+
+    /**
+     * Plays a single job and sends its answer. A job that fails, even with an Error such as
+     * running out of memory, is answered with an error line so the client does not wait forever.
+     *
+     * @param session The session the job came from.
+     * @param job     The number of the job in its session.
+     * @param line    The arguments of the job.
+     */
+
+    private void playJob(Session session, long job, String line) {
+        try {
+            String[] args = line.split(ARGUMENT_SEPARATOR);
+            String problem = checkJob(args);
+            if (problem != null) {
+                session.sendError(job, problem);
+                return;
+            }
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            PrintStream jobOut = new PrintStream(buffer, false, StandardCharsets.UTF_8);
+            long start = System.nanoTime();
+            Tournament.play(args, jobOut);
+            jobOut.flush();
+            long millis = (System.nanoTime() - start) / NANOS_PER_MILLI;
+            session.sendResult(job, buffer.toString(StandardCharsets.UTF_8), millis);
+        } catch (RuntimeException | Error e) {
+            session.sendError(job, e.toString());
+        } finally {
+            session.finishJob();
+        }
+    }
+
+    /**
+     * Checks that a job can be played by the daemon: it has the arguments of Tournament.main,
+     * and nothing in it reads the standard input or writes to the standard output.
+     *
+     * @param args The arguments of the job.
+     * @return The reason the job is refused, or null if it can be played.
+     */
+
+    private static String checkJob(String[] args) {
+        if (args.length < TOURNAMENT_ARGUMENTS) {
+            return Constants.DAEMON_JOB_USAGE;
+        }
+        if (!args[RENDERER_INDEX].equalsIgnoreCase(NO_RENDERER)) {
+            return Constants.DAEMON_INTERACTIVE_JOB;
+        }
+        for (int i = RENDERER_INDEX + 1; i < OPTIONS_INDEX; i++) {
+            if (args[i].equalsIgnoreCase(HUMAN)) {
+                return Constants.DAEMON_INTERACTIVE_JOB;
+            }
+        }
+        boolean hasStats = false;
+        boolean hasOut = false;
+        for (int i = OPTIONS_INDEX; i < args.length; i++) {
+            String option = args[i].toLowerCase();
+            hasStats |= option.startsWith(STATS_OPTION);
+            hasOut |= option.startsWith(OUT_OPTION);
+        }
+        if (hasStats && !hasOut) {
+            return Constants.DAEMON_INTERACTIVE_JOB;
+        }
+        return null;
+    }
+
+    /**
+     * The Session class holds the stream a session is answered on and counts its unanswered
+     * jobs.
+     */
+
+    private static class Session {
+
+        private final PrintStream out;
+
+        private long pendingJobs = 0;
+
+        /**
+         * Constructs a session answered on a stream.
+         *
+         * @param out The stream the answers are written to.
+         */
+        Session(PrintStream out) {
+            this.out = out;
+        }
+
+        /**
+         * Counts a job sent to the pool.
+         */
+
+        synchronized void startJob() {
+            pendingJobs++;
+        }
+
+        /**
+         * Counts a job as answered.
+         */
+
+        synchronized void finishJob() {
+            pendingJobs--;
+            notifyAll();
+        }
+
+        /**
+         * Waits until every job of the session is answered.
+         */
+
+        synchronized void awaitJobs() {
+            boolean interrupted = false;
+            while (pendingJobs > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Sends the output of a job, each line prefixed by the job number, then its done line.
+         *
+         * @param job    The number of the job.
+         * @param output The text the job printed.
+         * @param millis The time the job took, in milliseconds.
+         */
+
+        synchronized void sendResult(long job, String output, long millis) {
+            if (!output.isEmpty()) {
+                for (String line : output.split(LINE_SEPARATOR)) {
+                    out.println(job + " " + line);
+                }
+            }
+            out.println(job + " " + DONE + " " + millis);
+            out.flush();
+        }
+
+        /**
+         * Sends the error line of a job.
+         *
+         * @param job     The number of the job.
+         * @param message The reason the job failed.
+         */
+
+        synchronized void sendError(long job, String message) {
+            out.println(job + " " + ERROR + " " + message.replaceAll(LINE_SEPARATOR, " "));
+            out.flush();
+        }
+    }
+
+    /**
+     * The main method for running the daemon. It accepts optional name=value arguments:
+     * port=N to listen on a loopback port instead of reading the standard input, and jobs=N for
+     * the number of jobs played at the same time.
+     *
+     * @param args Command-line arguments.
+     * @throws IOException If the jobs cannot be read or the port cannot be listened on.
+     */
+
+    public static void main(String[] args) throws IOException {
+        int port = NO_PORT;
+        int jobs = Runtime.getRuntime().availableProcessors();
+        for (String arg : args) {
+            String[] pair = arg.split(SEPARATOR, 2);
+            try {
+                if (pair.length == 2 && pair[0].equalsIgnoreCase(PORT)) {
+                    port = Integer.parseInt(pair[1]);
+                } else if (pair.length == 2 && pair[0].equalsIgnoreCase(JOBS)) {
+                    jobs = Integer.parseInt(pair[1]);
+                } else {
+                    port = Integer.MIN_VALUE;
+                }
+            } catch (NumberFormatException e) {
+                port = Integer.MIN_VALUE;
+            }
+        }
+        if (jobs < 1 || port != NO_PORT && (port < 0 || port > 0xFFFF)) {
+            System.out.println(Constants.UNKNOWN_DAEMON_OPTION);
+            return;
+        }
+        TournamentDaemon daemon = new TournamentDaemon(jobs);
+        try {
+            if (port == NO_PORT) {
+                daemon.serve(new BufferedReader(new InputStreamReader(System.in,
+                        StandardCharsets.UTF_8)), System.out);
+            } else {
+                daemon.listen(port);
+            }
+        } finally {
+            daemon.shutdown();
+        }
+    }
+}
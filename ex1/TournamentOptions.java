@@ -0,0 +1,558 @@
+/**
+ * The TournamentOptions class holds the optional settings of a tournament, given on the
+ * command line after the mandatory arguments as name=value pairs (e.g. "workers=8").
+ * They also carry the settings of the engine players built by the PlayerFactory.
+ * Settings that are not given keep their default values.
+ */
+
+public class TournamentOptions {
+
+    private final static String SEPARATOR = "=";
+    private final static String WORKERS = "workers";
+    private final static String DEPTH = "depth";
+    private final static String NODES = "nodes";
+    private final static String MOVE_TIME = "movetime";
+    private final static String THREADS = "threads";
+    private final static String SEARCH_THREADS = "searchthreads";
+    private final static String STATS = "stats";
+    private final static String OUT = "out";
+    private final static String INTERVAL = "interval";
+    private final static String SPRT = "sprt";
+    private final static String ALPHA = "alpha";
+    private final static String BETA = "beta";
+    private final static String ELO_SEPARATOR = ":";
+    private final static String RECORD = "record";
+    private final static String TABLEBASE = "tablebase";
+    private final static String PROFILE = "profile";
+    private final static String JFR = "jfr";
+    private final static String PONDER = "ponder";
+    private final static String SEED = "seed";
+    private final static String SAMPLE = "sample";
+    private final static String OPENING = "opening";
+    private final static String RATE = "rate";
+    private final static String LAMBDA = "lambda";
+    private final static String EPSILON = "epsilon";
+    private final static String NETWORKS = "networks";
+    private final static String PROOF_NODES = "proofnodes";
+    private final static String MEMORY = "memory";
+    private final static String MOVE_LIMIT = "movelimit";
+    private final static String CLOCK = "clock";
+    private final static String OVERRUN = "overrun";
+    private final static String FORFEIT = "forfeit";
+    private final static String FIRST_BLANK = "first";
+    private final static String RANDOM_BLANK = "random";
+
+    private final static int DEFAULT_WORKERS = 1;
+
+    private final static double DEFAULT_ERROR_RATE = 0.05;
+
+    private final static String DEFAULT_TABLEBASE_DIRECTORY = ".";
+
+    private final static int DEFAULT_OPENING_MOVES = 2;
+
+    private final static double DEFAULT_LEARNING_RATE = 0.1;
+
+    private final static double DEFAULT_LAMBDA = 0.5;
+
+    private final static double DEFAULT_EXPLORATION_RATE = 0.1;
+
+    private final static String DEFAULT_NETWORK_DIRECTORY = ".";
+
+    private int workers = DEFAULT_WORKERS;
+
+    private int searchDepth = SearchPlayer.DEFAULT_DEPTH;
+
+    private long searchNodes = SearchPlayer.DEFAULT_NODE_BUDGET;
+
+    private long moveTimeMillis = MctsPlayer.DEFAULT_MOVE_TIME_MILLIS;
+
+    private int engineThreads = MctsPlayer.DEFAULT_THREADS;
+
+    private int searchThreads = SearchPlayer.DEFAULT_THREADS;
+
+    private String statsFormat = null;
+
+    private String outputPath = null;
+
+    private long summaryInterval = 0;
+
+    private String recordPath = null;
+
+    private String tablebaseDirectory = DEFAULT_TABLEBASE_DIRECTORY;
+
+    private int profileInterval = 0;
+
+    private boolean jfrEnabled = false;
+
+    private boolean ponderEnabled = false;
+
+    private long seed = 0;
+
+    private double sampleRate = 1;
+
+    private int openingMoves = DEFAULT_OPENING_MOVES;
+
+    private double learningRate = DEFAULT_LEARNING_RATE;
+
+    private double lambda = DEFAULT_LAMBDA;
+
+    private double explorationRate = DEFAULT_EXPLORATION_RATE;
+
+    private String networkDirectory = DEFAULT_NETWORK_DIRECTORY;
+
+    private long proofNodes = ProofNumberSearch.DEFAULT_NODE_BUDGET;
+
+    private int proofMemoryMegabytes = ProofNumberSearch.DEFAULT_MEMORY_MEGABYTES;
+
+    private long moveLimitMillis = TimeControl.UNLIMITED;
+
+    private long clockMillis = TimeControl.UNLIMITED;
+
+    private int overrunPolicy = TimeControl.FORFEIT;
+
+    private boolean sprtEnabled = false;
+
+    private double sprtElo0 = 0;
+
+    private double sprtElo1 = 0;
+
+    private double sprtAlpha = DEFAULT_ERROR_RATE;
+
+    private double sprtBeta = DEFAULT_ERROR_RATE;
+
+    /**
+     * Constructs TournamentOptions with the default settings.
+     */
+    public TournamentOptions() {
+    }
+
+    /**
+     * Parses the optional name=value arguments, starting at the specified index.
+     *
+     * @param args       Command-line arguments.
+     * @param firstIndex The index of the first optional argument.
+     * @return The parsed options, or null if an argument is unknown or malformed.
+     */
+
+    public static TournamentOptions parse(String[] args, int firstIndex) {
+        TournamentOptions options = new TournamentOptions();
+        for (int i = firstIndex; i < args.length; i++) {
+            String[] pair = args[i].split(SEPARATOR, 2);
+            if (pair.length != 2 || !options.setOption(pair[0].toLowerCase(), pair[1])) {
+                return null;
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Retrieves the number of worker threads the rounds are spread over.
+     *
+     * @return The number of workers, 1 for a sequential tournament.
+     */
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Retrieves the depth the search players look ahead.
+     *
+     * @return The search depth in moves.
+     */
+
+    public int getSearchDepth() {
+        return searchDepth;
+    }
+
+    /**
+     * Retrieves the number of nodes a search player may search for a single move.
+     *
+     * @return The node budget of a single move.
+     */
+
+    public long getSearchNodes() {
+        return searchNodes;
+    }
+
+    /**
+     * Retrieves the wall-clock budget of a single move of the time-based engine players.
+     *
+     * @return The move time in milliseconds.
+     */
+
+    public long getMoveTimeMillis() {
+        return moveTimeMillis;
+    }
+
+    /**
+     * Retrieves the number of threads the MCTS player may search a single move with.
+     *
+     * @return The number of engine threads.
+     */
+
+    public int getEngineThreads() {
+        return engineThreads;
+    }
+
+    /**
+     * Retrieves the number of threads an alpha-beta search player may search a single move with.
+     *
+     * @return The number of search threads, 1 unless configured.
+     */
+
+    public int getSearchThreads() {
+        return searchThreads;
+    }
+
+    /**
+     * Retrieves the format of the machine-readable summaries of a headless tournament.
+     *
+     * @return "csv" or "json", or null if the results are printed for humans.
+     */
+
+    public String getStatsFormat() {
+        return statsFormat;
+    }
+
+    /**
+     * Retrieves the file the machine-readable summaries are written to.
+     *
+     * @return The path of the output file, or null for the standard output.
+     */
+
+    public String getOutputPath() {
+        return outputPath;
+    }
+
+    /**
+     * Retrieves the number of rounds between two summaries of a headless tournament.
+     *
+     * @return The summary interval in rounds, 0 for a single summary at the end.
+     */
+
+    public long getSummaryInterval() {
+        return summaryInterval;
+    }
+
+    /**
+     * Retrieves the file the games of the tournament are recorded to.
+     *
+     * @return The path of the game log, or null if the games are not recorded.
+     */
+
+    public String getRecordPath() {
+        return recordPath;
+    }
+
+    /**
+     * Retrieves the directory the tablebases of the perfect player are loaded from and saved to.
+     * It is the working directory unless configured, so the first perfect game on a new board
+     * writes its tablebase there.
+     *
+     * @return The path of the tablebase directory.
+     */
+
+    public String getTablebaseDirectory() {
+        return tablebaseDirectory;
+    }
+
+    /**
+     * Retrieves how often the turns of the players are timed.
+     *
+     * @return The number of turns between two timed turns, 0 if the turns are not timed.
+     */
+
+    public int getProfileInterval() {
+        return profileInterval;
+    }
+
+    /**
+     * Checks whether every turn of the players is emitted as a JFR event.
+     *
+     * @return True if the turns are emitted as PlayerTurnEvent events, false otherwise.
+     */
+
+    public boolean isJfrEnabled() {
+        return jfrEnabled;
+    }
+
+    /**
+     * Creates the sequential probability ratio test the tournament stops on, if one is
+     * configured. It is given as "sprt=elo0:elo1", with optional "alpha=" and "beta=" error rates.
+     *
+     * @return A new SequentialTest, or null if the tournament plays all its rounds.
+     */
+
+    public SequentialTest createSequentialTest() {
+        if (!sprtEnabled) {
+            return null;
+        }
+        return new SequentialTest(sprtElo0, sprtElo1, sprtAlpha, sprtBeta);
+    }
+
+    /**
+     * Checks whether the search players keep searching on the opponent's time.
+     *
+     * @return True if the search players ponder, false otherwise.
+     */
+
+    public boolean isPonderEnabled() {
+        return ponderEnabled;
+    }
+
+    /**
+     * Retrieves the seed the random choices of a self-play run are derived from.
+     *
+     * @return The seed.
+     */
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Retrieves the probability that a self-play position is sampled.
+     *
+     * @return The sampling rate, above 0 and at most 1.
+     */
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Retrieves the number of random moves every self-play game opens with.
+     *
+     * @return The number of opening moves.
+     */
+
+    public int getOpeningMoves() {
+        return openingMoves;
+    }
+
+    /**
+     * Retrieves the learning rate of the n-tuple network training.
+     *
+     * @return The learning rate, shared by the weights of a position.
+     */
+
+    public double getLearningRate() {
+        return learningRate;
+    }
+
+    /**
+     * Retrieves how much of a game's result the n-tuple network training carries back to the
+     * earlier positions.
+     *
+     * @return The lambda of TD(lambda), between 0 and 1.
+     */
+
+    public double getLambda() {
+        return lambda;
+    }
+
+    /**
+     * Retrieves the probability that a move of the n-tuple network training is random.
+     *
+     * @return The exploration rate, between 0 and 1.
+     */
+
+    public double getExplorationRate() {
+        return explorationRate;
+    }
+
+    /**
+     * Retrieves the directory the n-tuple networks are loaded from and saved to.
+     *
+     * @return The path of the network directory.
+     */
+
+    public String getNetworkDirectory() {
+        return networkDirectory;
+    }
+
+    /**
+     * Retrieves the number of nodes a proof-number search may expand for a single position.
+     *
+     * @return The node budget of a single solve.
+     */
+
+    public long getProofNodes() {
+        return proofNodes;
+    }
+
+    /**
+     * Retrieves the memory the proof table of a proof-number search may take.
+     *
+     * @return The memory of the proof table in megabytes.
+     */
+
+    public int getProofMemoryMegabytes() {
+        return proofMemoryMegabytes;
+    }
+
+    /**
+     * Creates the time limits of the games, if any are configured. They are given as
+     * "movelimit=" for every move and "clock=" for each player's whole game, both in
+     * milliseconds, with "overrun=forfeit|first|random" telling what happens to a player who
+     * overruns them.
+     *
+     * @return A new TimeControl, or null if the turns are not timed.
+     */
+
+    public TimeControl createTimeControl() {
+        if (moveLimitMillis == TimeControl.UNLIMITED && clockMillis == TimeControl.UNLIMITED) {
+            return null;
+        }
+        return new TimeControl(moveLimitMillis, clockMillis, overrunPolicy);
+    }
+
+    /**
+     * Sets a single option by its name.
+     *
+     * @param name  The lower case option name.
+     * @param value The option value.
+     * @return True if the option is known and its value is valid, false otherwise.
+     */
+
+    private boolean setOption(String name, String value) {
+        try {
+            switch (name) {
+                case WORKERS -> {
+                    workers = Integer.parseInt(value);
+                    return workers >= 1;
+                }
+                case DEPTH -> {
+                    searchDepth = Integer.parseInt(value);
+                    return searchDepth >= 1;
+                }
+                case NODES -> {
+                    searchNodes = Long.parseLong(value);
+                    return searchNodes >= 1;
+                }
+                case MOVE_TIME -> {
+                    moveTimeMillis = Long.parseLong(value);
+                    return moveTimeMillis >= 0;
+                }
+                case THREADS -> {
+                    engineThreads = Integer.parseInt(value);
+                    return engineThreads >= 1;
+                }
+                case SEARCH_THREADS -> {
+                    searchThreads = Integer.parseInt(value);
+                    return searchThreads >= 1;
+                }
+                case STATS -> {
+                    statsFormat = value.toLowerCase();
+                    return statsFormat.equals(StatisticsWriter.CSV)
+                            || statsFormat.equals(StatisticsWriter.JSON);
+                }
+                case OUT -> {
+                    outputPath = value;
+                    return !value.isEmpty();
+                }
+                case INTERVAL -> {
+                    summaryInterval = Long.parseLong(value);
+                    return summaryInterval >= 0;
+                }
+                case RECORD -> {
+                    recordPath = value;
+                    return !value.isEmpty();
+                }
+                case TABLEBASE -> {
+                    tablebaseDirectory = value;
+                    return !value.isEmpty();
+                }
+                case PROFILE -> {
+                    profileInterval = Integer.parseInt(value);
+                    return profileInterval >= 0;
+                }
+                case JFR -> {
+                    jfrEnabled = Boolean.parseBoolean(value);
+                    return jfrEnabled || value.equalsIgnoreCase(Boolean.FALSE.toString());
+                }
+                case PONDER -> {
+                    ponderEnabled = Boolean.parseBoolean(value);
+                    return ponderEnabled || value.equalsIgnoreCase(Boolean.FALSE.toString());
+                }
+                case SEED -> {
+                    seed = Long.parseLong(value);
+                    return true;
+                }
+                case SAMPLE -> {
+                    sampleRate = Double.parseDouble(value);
+                    return sampleRate > 0 && sampleRate <= 1;
+                }
+                case OPENING -> {
+                    openingMoves = Integer.parseInt(value);
+                    return openingMoves >= 0;
+                }
+                case RATE -> {
+                    learningRate = Double.parseDouble(value);
+                    return learningRate > 0;
+                }
+                case LAMBDA -> {
+                    lambda = Double.parseDouble(value);
+                    return lambda >= 0 && lambda <= 1;
+                }
+                case EPSILON -> {
+                    explorationRate = Double.parseDouble(value);
+                    return explorationRate >= 0 && explorationRate <= 1;
+                }
+                case NETWORKS -> {
+                    networkDirectory = value;
+                    return !value.isEmpty();
+                }
+                case PROOF_NODES -> {
+                    proofNodes = Long.parseLong(value);
+                    return proofNodes >= 1;
+                }
+                case MEMORY -> {
+                    proofMemoryMegabytes = Integer.parseInt(value);
+                    return proofMemoryMegabytes >= 1;
+                }
+                case MOVE_LIMIT -> {
+                    moveLimitMillis = Long.parseLong(value);
+                    return moveLimitMillis >= 0;
+                }
+                case CLOCK -> {
+                    clockMillis = Long.parseLong(value);
+                    return clockMillis >= 0;
+                }
+                case OVERRUN -> {
+                    switch (value.toLowerCase()) {
+                        case FORFEIT -> overrunPolicy = TimeControl.FORFEIT;
+                        case FIRST_BLANK -> overrunPolicy = TimeControl.FIRST_BLANK;
+                        case RANDOM_BLANK -> overrunPolicy = TimeControl.RANDOM_BLANK;
+                        default -> {
+                            return false;
+                        }
+                    }
+                    return true;
+                }
+                case SPRT -> {
+                    String[] bounds = value.split(ELO_SEPARATOR);
+                    if (bounds.length != 2) {
+                        return false;
+                    }
+                    sprtEnabled = true;
+                    sprtElo0 = Double.parseDouble(bounds[0]);
+                    sprtElo1 = Double.parseDouble(bounds[1]);
+                    return sprtElo1 > sprtElo0;
+                }
+                case ALPHA -> {
+                    sprtAlpha = Double.parseDouble(value);
+                    return sprtAlpha > 0 && sprtAlpha < 1;
+                }
+                case BETA -> {
+                    sprtBeta = Double.parseDouble(value);
+                    return sprtBeta > 0 && sprtBeta < 1;
+                }
+            }
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,217 @@
+import java.util.Arrays;
+
+/**
+ * The TournamentStatistics class accumulates the results of tournament rounds: the wins of each
+ * player and the ties, split by whether player 1 played X or O, and the total number of moves.
+ * Workers of a parallel tournament count their rounds in their own instance and add it to the
+ * tournament's instance batch by batch.
+ */
+
+public class TournamentStatistics {
+
+    /**
+     * The result kind of a round won by player 1.
+     */
+    public static final int PLAYER1_WIN = 0;
+
+    /**
+     * The result kind of a round won by player 2.
+     */
+    public static final int PLAYER2_WIN = 1;
+
+    /**
+     * The result kind of a tied round.
+     */
+    public static final int TIE = 2;
+
+    private static final int RESULT_KINDS = 3;
+
+    private static final int AS_X = 0;
+
+    private static final int AS_O = 1;
+
+    private static final double Z_95 = 1.96;
+
+    private final long[][] results = new long[2][RESULT_KINDS];
+
+    private long moves;
+
+    /**
+     * Constructs empty TournamentStatistics.
+     */
+    public TournamentStatistics() {
+    }
+
+    /**
+     * Counts the result of a single round.
+     *
+     * @param player1IsX True if player 1 played X in the round, false otherwise.
+     * @param result     The kind of the result: PLAYER1_WIN, PLAYER2_WIN or TIE.
+     * @param gameMoves  The number of moves played in the round.
+     */
+
+    public void addRound(boolean player1IsX, int result, int gameMoves) {
+        results[player1IsX ? AS_X : AS_O][result]++;
+        moves += gameMoves;
+    }
+
+    /**
+     * Tells the kind of the result of a round from the mark of its winner.
+     *
+     * @param winner     The mark of the winner ('X', 'O') or 'BLANK' for a tie.
+     * @param player1IsX True if player 1 played X in the round, false otherwise.
+     * @return The kind of the result: PLAYER1_WIN, PLAYER2_WIN or TIE.
+     */
+
+    public static int resultOf(Mark winner, boolean player1IsX) {
+        if (winner == Mark.BLANK) {
+            return TIE;
+        }
+        if ((winner == Mark.X) == player1IsX) {
+            return PLAYER1_WIN;
+        }
+        return PLAYER2_WIN;
+    }
+
+    /**
+     * Adds the rounds counted by other statistics to these statistics.
+     *
+     * @param other The statistics to add.
+     */
+
+    public void add(TournamentStatistics other) {
+        for (int seat = AS_X; seat <= AS_O; seat++) {
+            for (int result = 0; result < RESULT_KINDS; result++) {
+                results[seat][result] += other.results[seat][result];
+            }
+        }
+        moves += other.moves;
+    }
+
+    /**
+     * Forgets all the counted rounds.
+     */
+
+    public void clear() {
+        for (long[] seatResults : results) {
+            Arrays.fill(seatResults, 0);
+        }
+        moves = 0;
+    }
+
+    /**
+     * Retrieves the number of rounds with a given result.
+     *
+     * @param result The kind of the result: PLAYER1_WIN, PLAYER2_WIN or TIE.
+     * @return The number of rounds with that result.
+     */
+
+    public long getCount(int result) {
+        return results[AS_X][result] + results[AS_O][result];
+    }
+
+    /**
+     * Retrieves the number of rounds with a given result, among the rounds in which player 1
+     * played a given mark.
+     *
+     * @param player1IsX True to count the rounds in which player 1 played X, false for O.
+     * @param result     The kind of the result: PLAYER1_WIN, PLAYER2_WIN or TIE.
+     * @return The number of rounds with that result.
+     */
+
+    public long getCount(boolean player1IsX, int result) {
+        return results[player1IsX ? AS_X : AS_O][result];
+    }
+
+    /**
+     * Retrieves the number of counted rounds.
+     *
+     * @return The number of rounds.
+     */
+
+    public long getRounds() {
+        return getRounds(true) + getRounds(false);
+    }
+
+    /**
+     * Retrieves the number of counted rounds in which player 1 played a given mark.
+     *
+     * @param player1IsX True to count the rounds in which player 1 played X, false for O.
+     * @return The number of rounds.
+     */
+
+    public long getRounds(boolean player1IsX) {
+        long[] seatResults = results[player1IsX ? AS_X : AS_O];
+        return seatResults[PLAYER1_WIN] + seatResults[PLAYER2_WIN] + seatResults[TIE];
+    }
+
+    /**
+     * Retrieves the average number of moves of a round.
+     *
+     * @return The average game length in moves, or 0 if no round was counted.
+     */
+
+    public double getAverageMoves() {
+        long rounds = getRounds();
+        return rounds == 0 ? 0 : (double) moves / rounds;
+    }
+
+    /**
+     * Computes the lower end of the 95% Wilson score interval of a rate.
+     *
+     * @param successes The number of successful trials.
+     * @param trials    The number of trials.
+     * @return The lower bound of the rate, 0 if there are no trials.
+     */
+
+    public static double wilsonLower(long successes, long trials) {
+        if (trials == 0) {
+            return 0;
+        }
+        return wilsonCenter(successes, trials) - wilsonHalfWidth(successes, trials);
+    }
+
+    /**
+     * Computes the upper end of the 95% Wilson score interval of a rate.
+     *
+     * @param successes The number of successful trials.
+     * @param trials    The number of trials.
+     * @return The upper bound of the rate, 1 if there are no trials.
+     */
+
+    public static double wilsonUpper(long successes, long trials) {
+        if (trials == 0) {
+            return 1;
+        }
+        return wilsonCenter(successes, trials) + wilsonHalfWidth(successes, trials);
+    }
+
+    /**
+     * Computes the center of the Wilson score interval, the observed rate pulled towards 1/2.
+     *
+     * @param successes The number of successful trials.
+     * @param trials    The number of trials, at least 1.
+     * @return The center of the interval.
+     */
+
+    private static double wilsonCenter(long successes, long trials) {
+        double rate = (double) successes / trials;
+        double zSquared = Z_95 * Z_95;
+        return (rate + zSquared / (2.0 * trials)) / (1 + zSquared / trials);
+    }
+
+    /**
+     * Computes the half width of the Wilson score interval.
+     *
+     * @param successes The number of successful trials.
+     * @param trials    The number of trials, at least 1.
+     * @return The half width of the interval.
+     */
+
+    private static double wilsonHalfWidth(long successes, long trials) {
+        double rate = (double) successes / trials;
+        double zSquared = Z_95 * Z_95;
+        return Z_95 / (1 + zSquared / trials)
+                * Math.sqrt(rate * (1 - rate) / trials + zSquared / (4.0 * trials * trials));
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ * The TranspositionTable class is a bounded cache of search results keyed by the Zobrist hash
+ * of a position. Each entry is packed into a single long holding the score, the best move,
+ * the search depth, the kind of bound and the search generation it was stored in.
+ * Entries are grouped in buckets of two slots: the first slot keeps the deepest result of the
+ * current search, the second slot is always replaced.
+ * Several search threads may share a table without locks. A slot stores the entry and the key
+ * XORed with the entry, and a probe only accepts the entry if the two XOR back to the key, so
+ * an entry torn by two threads writing the same slot at once reads as a miss.
+ */
+
+public class TranspositionTable {
+
+    /**
+     * The score is exact.
+     */
+    public static final int EXACT = 1;
+
+    /**
+     * The score is a lower bound, the search failed high.
+     */
+    public static final int LOWER_BOUND = 2;
+
+    /**
+     * The score is an upper bound, the search failed low.
+     */
+    public static final int UPPER_BOUND = 3;
+
+    /**
+     * The value returned by probe when the position is not in the table.
+     */
+    public static final long NO_ENTRY = 0L;
+
+    private static final int SCORE_BITS = 24;
+    private static final int MOVE_BITS = 22;
+    private static final int DEPTH_BITS = 8;
+    private static final int BOUND_BITS = 2;
+
+    private static final int MOVE_SHIFT = SCORE_BITS;
+    private static final int DEPTH_SHIFT = MOVE_SHIFT + MOVE_BITS;
+    private static final int BOUND_SHIFT = DEPTH_SHIFT + DEPTH_BITS;
+    private static final int GENERATION_SHIFT = BOUND_SHIFT + BOUND_BITS;
+
+    private static final long SCORE_MASK = (1L << SCORE_BITS) - 1;
+    private static final long MOVE_MASK = (1L << MOVE_BITS) - 1;
+    private static final long DEPTH_MASK = (1L << DEPTH_BITS) - 1;
+    private static final long BOUND_MASK = (1L << BOUND_BITS) - 1;
+    private static final int GENERATION_MASK = 0xFF;
+
+    private final long[] keys;
+
+    private final long[] entries;
+
+    private final int indexMask;
+
+    private volatile int generation;
+
+    /**
+     * Constructs an empty transposition table.
+     *
+     * @param sizeBits The base 2 logarithm of the number of entries in the table.
+     */
+    public TranspositionTable(int sizeBits) {
+        keys = new long[1 << sizeBits];
+        entries = new long[1 << sizeBits];
+        indexMask = (1 << sizeBits) - 2;
+    }
+
+    /**
+     * Starts a new search, so entries stored by previous searches become the first to be replaced.
+     */
+
+    public void newSearch() {
+        generation = (generation + 1) & GENERATION_MASK;
+    }
+
+    /**
+     * Looks up the entry stored for a position.
+     *
+     * @param key The Zobrist hash of the position.
+     * @return The packed entry, or NO_ENTRY if the position is not in the table.
+     */
+
+    public long probe(long key) {
+        int index = (int) key & indexMask;
+        long entry = entries[index];
+        if ((keys[index] ^ entry) == key && entry != NO_ENTRY) {
+            return entry;
+        }
+        entry = entries[index + 1];
+        if ((keys[index + 1] ^ entry) == key && entry != NO_ENTRY) {
+            return entry;
+        }
+        return NO_ENTRY;
+    }
+
+    /**
+     * Stores the result of searching a position. The deeper slot of the bucket is only replaced
+     * by a result at least as deep, or when it belongs to an earlier search. When it already
+     * holds the same position, a shallower result is dropped unless its score is exact.
+     *
+     * @param key   The Zobrist hash of the position.
+     * @param score The score of the position, which must fit in 24 signed bits.
+     * @param move  The index of the best move, or -1 if there is none.
+     * @param depth The remaining depth the position was searched to.
+     * @param bound The kind of bound: EXACT, LOWER_BOUND or UPPER_BOUND.
+     */
+
+    public void store(long key, int score, int move, int depth, int bound) {
+        int index = (int) key & indexMask;
+        long deepEntry = entries[index];
+        boolean keepsDeepEntry = deepEntry != NO_ENTRY
+                && getGeneration(deepEntry) == generation && getDepth(deepEntry) > depth;
+        if ((keys[index] ^ deepEntry) == key) {
+            if (keepsDeepEntry && bound != EXACT) {
+                return;
+            }
+        } else if (keepsDeepEntry) {
+            index++;
+        }
+        long entry = ((long) score & SCORE_MASK)
+                | ((long) (move + 1) & MOVE_MASK) << MOVE_SHIFT
+                | ((long) Math.min(depth, (int) DEPTH_MASK) & DEPTH_MASK) << DEPTH_SHIFT
+                | ((long) bound & BOUND_MASK) << BOUND_SHIFT
+                | ((long) generation) << GENERATION_SHIFT;
+        keys[index] = key ^ entry;
+        entries[index] = entry;
+    }
+
+    /**
+     * Retrieves the score of a packed entry.
+     *
+     * @param entry The packed entry.
+     * @return The stored score.
+     */
+
+    public static int getScore(long entry) {
+        return ((int) entry << (Integer.SIZE - SCORE_BITS)) >> (Integer.SIZE - SCORE_BITS);
+    }
+
+    /**
+     * Retrieves the best move of a packed entry.
+     *
+     * @param entry The packed entry.
+     * @return The index of the stored best move, or -1 if there is none.
+     */
+
+    public static int getMove(long entry) {
+        return (int) ((entry >>> MOVE_SHIFT) & MOVE_MASK) - 1;
+    }
+
+    /**
+     * Retrieves the search depth of a packed entry.
+     *
+     * @param entry The packed entry.
+     * @return The remaining depth the position was searched to.
+     */
+
+    public static int getDepth(long entry) {
+        return (int) ((entry >>> DEPTH_SHIFT) & DEPTH_MASK);
+    }
+
+    /**
+     * Retrieves the kind of bound of a packed entry.
+     *
+     * @param entry The packed entry.
+     * @return EXACT, LOWER_BOUND or UPPER_BOUND.
+     */
+
+    public static int getBound(long entry) {
+        return (int) ((entry >>> BOUND_SHIFT) & BOUND_MASK);
+    }
+
+    /**
+     * Retrieves the search generation of a packed entry.
+     *
+     * @param entry The packed entry.
+     * @return The generation of the search that stored the entry.
+     */
+
+    private static int getGeneration(long entry) {
+        return (int) (entry >>> GENERATION_SHIFT) & GENERATION_MASK;
+    }
+}
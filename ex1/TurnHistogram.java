@@ -0,0 +1,174 @@
+/**
+ * The TurnHistogram class collects the latencies of player turns in a log-linear histogram:
+ * every power of two is split into 8 buckets, so any percentile is known within 12.5% while the
+ * histogram stays a fixed array of counters. It also counts the turns, the sampled turns, and the
+ * bytes allocated by the sampled turns.
+ * A histogram is updated by a single thread; histograms of several threads are merged with add.
+ */
+
+public class TurnHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+
+    private static final int LINEAR_BITS = Integer.numberOfTrailingZeros(LINEAR_LIMIT);
+
+    private static final int BUCKETS = LINEAR_LIMIT + (Long.SIZE - LINEAR_BITS) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+
+    private long turns;
+
+    private long samples;
+
+    private long maxNanos;
+
+    private long allocatedBytes;
+
+    private long allocationSamples;
+
+    /**
+     * Constructs an empty TurnHistogram.
+     */
+    public TurnHistogram() {
+    }
+
+    /**
+     * Counts a turn that was not sampled.
+     */
+
+    public void countTurn() {
+        turns++;
+    }
+
+    /**
+     * Counts a sampled turn with its latency.
+     *
+     * @param nanos The duration of the turn, in nanoseconds.
+     * @param bytes The bytes the turn allocated, or a negative number if they are not known.
+     */
+
+    public void recordTurn(long nanos, long bytes) {
+        turns++;
+        samples++;
+        counts[bucketOf(nanos)]++;
+        maxNanos = Math.max(maxNanos, nanos);
+        if (bytes >= 0) {
+            allocatedBytes += bytes;
+            allocationSamples++;
+        }
+    }
+
+    /**
+     * Adds the turns counted by another histogram to this histogram.
+     *
+     * @param other The histogram to add.
+     */
+
+    public void add(TurnHistogram other) {
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            counts[bucket] += other.counts[bucket];
+        }
+        turns += other.turns;
+        samples += other.samples;
+        maxNanos = Math.max(maxNanos, other.maxNanos);
+        allocatedBytes += other.allocatedBytes;
+        allocationSamples += other.allocationSamples;
+    }
+
+    /**
+     * Retrieves the number of counted turns, sampled or not.
+     *
+     * @return The number of turns.
+     */
+
+    public long getTurns() {
+        return turns;
+    }
+
+    /**
+     * Retrieves the number of sampled turns.
+     *
+     * @return The number of turns whose latency was recorded.
+     */
+
+    public long getSamples() {
+        return samples;
+    }
+
+    /**
+     * Retrieves the longest sampled turn.
+     *
+     * @return The maximal latency, in nanoseconds.
+     */
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    /**
+     * Retrieves the average number of bytes allocated by a sampled turn.
+     *
+     * @return The average allocation per turn, or -1 if the JVM does not report allocations.
+     */
+
+    public double getBytesPerTurn() {
+        return allocationSamples == 0 ? -1 : (double) allocatedBytes / allocationSamples;
+    }
+
+    /**
+     * Estimates a percentile of the sampled latencies by the upper end of its bucket.
+     *
+     * @param percentile The percentile, between 0 and 100.
+     * @return The latency at the percentile, in nanoseconds, or 0 if there are no samples.
+     */
+
+    public long getPercentileNanos(double percentile) {
+        long rank = Math.max(1, (long) Math.ceil(samples * percentile / 100));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(bucket), maxNanos);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Finds the bucket of a latency. Latencies below LINEAR_LIMIT have a bucket each, and every
+     * following power of two is split into SUB_BUCKETS buckets.
+     *
+     * @param nanos The latency, in nanoseconds.
+     * @return The index of the bucket.
+     */
+
+    private static int bucketOf(long nanos) {
+        if (nanos < LINEAR_LIMIT) {
+            return (int) Math.max(0, nanos);
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_LIMIT + (exponent - LINEAR_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Finds the largest latency of a bucket.
+     *
+     * @param bucket The index of the bucket.
+     * @return The upper end of the bucket, in nanoseconds.
+     */
+
+    private static long upperBoundOf(int bucket) {
+        if (bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+        int exponent = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + LINEAR_BITS;
+        int subBucket = (bucket - LINEAR_LIMIT) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return ((long) (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS)) + width - 1;
+    }
+}
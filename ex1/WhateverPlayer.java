@@ -7,24 +7,20 @@ import java.util.Random;
 
 public class WhateverPlayer implements Player {
 
+    private final Random random = new Random();
+
     /**
      * Plays a turn on the board by randomly selecting an empty cell.
-     * The move is made according to the WhateverPlayer's strategy.
+     * The move is made according to the WhateverPlayer's strategy. The cell is drawn from the
+     * board's index of blank cells, so the move takes constant time however full the board is.
      *
      * @param board The board on which the move is to be made.
      * @param mark  The mark (X or O) associated with the player.
      */
     @Override
     public void playTurn(Board board, Mark mark) {
-        while (true) {
-            Random random = new Random();
-            int row = random.nextInt(board.getSize());
-            int col = random.nextInt(board.getSize());
-            if (board.putMark(mark, row, col)) {
-                break;
-            }
-
-        }
+        int cell = board.getBlankCell(random.nextInt(board.getBlankCount()));
+        board.putMark(mark, cell / board.getSize(), cell % board.getSize());
 
     }
 
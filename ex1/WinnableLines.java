@@ -0,0 +1,201 @@
+/**
+ * The WinnableLines class tracks which windows of winStreak consecutive cells along the rows,
+ * columns and diagonals of a board can still be completed. A window is dead once it holds marks
+ * of both players; when every window is dead, neither player can win anymore.
+ * Each window only needs two bits, one telling whether it holds an X and one telling whether it
+ * holds an O. The bits of the windows along the same line are adjacent, so the windows a mark
+ * falls into are updated a whole word at a time.
+ */
+
+public class WinnableLines {
+
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+
+    private static final int WORD_SHIFT = 6;
+
+    private static final int WORD_MASK = 63;
+
+    private final int size;
+
+    private final int winStreak;
+
+    private final int[] firstLines;
+
+    private final long[] xWindows;
+
+    private final long[] oWindows;
+
+    private final int windowCount;
+
+    private int openWindows;
+
+    /**
+     * Constructs a tracker for an empty board, on which every window is open.
+     *
+     * @param size      The size of the square board.
+     * @param winStreak The streak length required for a win.
+     */
+    public WinnableLines(int size, int winStreak) {
+        this.size = size;
+        this.winStreak = winStreak;
+        int diagonals = 2 * size - 1;
+        this.firstLines = new int[]{0, size, 2 * size, 2 * size + diagonals};
+        int bits = (2 * size + 2 * diagonals) * size;
+        this.xWindows = new long[(bits + WORD_MASK) >>> WORD_SHIFT];
+        this.oWindows = new long[(bits + WORD_MASK) >>> WORD_SHIFT];
+        int count = 0;
+        for (int direction = 0; direction < DIRECTIONS.length; direction++) {
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    if (isWindow(direction, row, col)) {
+                        count++;
+                    }
+                }
+            }
+        }
+        this.windowCount = count;
+        this.openWindows = count;
+    }
+
+    /**
+     * Checks whether some window can still be completed by one of the players.
+     *
+     * @return True if at least one window holds marks of a single player or none at all.
+     */
+
+    public boolean hasOpenWindow() {
+        return openWindows > 0;
+    }
+
+    /**
+     * Updates the windows containing a newly marked cell.
+     *
+     * @param mark The mark placed on the cell, X or O.
+     * @param row  The row index of the cell.
+     * @param col  The column index of the cell.
+     */
+
+    public void addMark(Mark mark, int row, int col) {
+        long[] ownWindows = mark == Mark.X ? xWindows : oWindows;
+        long[] otherWindows = mark == Mark.X ? oWindows : xWindows;
+        for (int direction = 0; direction < DIRECTIONS.length; direction++) {
+            int rowDelta = DIRECTIONS[direction][0];
+            int colDelta = DIRECTIONS[direction][1];
+            int firstOffset = Math.max(firstOffset(row, rowDelta), firstOffset(col, colDelta));
+            int lastOffset = Math.min(lastOffset(row, rowDelta), lastOffset(col, colDelta));
+            if (firstOffset > lastOffset) {
+                continue;
+            }
+            int position = lineIndex(direction, row, col) * size + (rowDelta == 0 ? col : row);
+            markWindows(ownWindows, otherWindows, position - lastOffset, position - firstOffset);
+        }
+    }
+
+    /**
+     * Clears all the marks, so every window is open again.
+     */
+
+    public void reset() {
+        for (int word = 0; word < xWindows.length; word++) {
+            xWindows[word] = 0;
+            oWindows[word] = 0;
+        }
+        openWindows = windowCount;
+    }
+
+    /**
+     * Marks a range of adjacent windows as holding a mark of one player, and counts the windows
+     * that become dead because they already held a mark of the other player.
+     *
+     * @param ownWindows   The window bits of the player who placed the mark.
+     * @param otherWindows The window bits of the other player.
+     * @param first        The bit index of the first window in the range.
+     * @param last         The bit index of the last window in the range.
+     */
+
+    private void markWindows(long[] ownWindows, long[] otherWindows, int first, int last) {
+        int firstWord = first >>> WORD_SHIFT;
+        int lastWord = last >>> WORD_SHIFT;
+        for (int word = firstWord; word <= lastWord; word++) {
+            long mask = -1L;
+            if (word == firstWord) {
+                mask &= -1L << (first & WORD_MASK);
+            }
+            if (word == lastWord) {
+                mask &= -1L >>> (WORD_MASK - (last & WORD_MASK));
+            }
+            openWindows -= Long.bitCount(mask & ~ownWindows[word] & otherWindows[word]);
+            ownWindows[word] |= mask;
+        }
+    }
+
+    /**
+     * Finds the line a cell lies on in a direction. The rows, the columns, the diagonals and the
+     * anti-diagonals are numbered one after the other.
+     *
+     * @param direction The index of the direction.
+     * @param row       The row index of the cell.
+     * @param col       The column index of the cell.
+     * @return The index of the line.
+     */
+
+    private int lineIndex(int direction, int row, int col) {
+        return firstLines[direction] + switch (direction) {
+            case 0 -> row;
+            case 1 -> col;
+            case 2 -> col - row + size - 1;
+            default -> col + row;
+        };
+    }
+
+    /**
+     * Finds the smallest distance from a cell back to the start of a window containing it,
+     * along one axis, so that the end of the window is still on the board.
+     *
+     * @param position The row or column index of the cell.
+     * @param delta    The step of the direction along that axis: -1, 0 or 1.
+     * @return The smallest valid distance to the start of the window.
+     */
+
+    private int firstOffset(int position, int delta) {
+        if (delta > 0) {
+            return Math.max(0, position + winStreak - size);
+        } else if (delta < 0) {
+            return Math.max(0, winStreak - 1 - position);
+        }
+        return 0;
+    }
+
+    /**
+     * Finds the largest distance from a cell back to the start of a window containing it,
+     * along one axis, so that the start of the window is still on the board.
+     *
+     * @param position The row or column index of the cell.
+     * @param delta    The step of the direction along that axis: -1, 0 or 1.
+     * @return The largest valid distance to the start of the window.
+     */
+
+    private int lastOffset(int position, int delta) {
+        if (delta > 0) {
+            return Math.min(winStreak - 1, position);
+        } else if (delta < 0) {
+            return Math.min(winStreak - 1, size - 1 - position);
+        }
+        return winStreak - 1;
+    }
+
+    /**
+     * Checks whether a window starting at a cell on the board also ends on the board.
+     *
+     * @param direction The index of the direction of the window.
+     * @param row       The row index of the first cell of the window.
+     * @param col       The column index of the first cell of the window.
+     * @return True if all the cells of the window are on the board.
+     */
+
+    private boolean isWindow(int direction, int row, int col) {
+        int endRow = row + (winStreak - 1) * DIRECTIONS[direction][0];
+        int endCol = col + (winStreak - 1) * DIRECTIONS[direction][1];
+        return endRow >= 0 && endRow < size && endCol >= 0 && endCol < size;
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * The Zobrist class provides the random 64-bit keys used to hash board positions.
+ * The hash of a position is the XOR of the keys of all its marked cells, so it can be
+ * updated in constant time whenever a mark is placed or removed.
+ * The keys are derived from the cell index and the mark with a SplitMix64 finalizer rather than
+ * read from a table, so they are the same for every board and cost no memory.
+ */
+
+public class Zobrist {
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private static final long MIX_MULTIPLIER_1 = 0xBF58476D1CE4E5B9L;
+
+    private static final long MIX_MULTIPLIER_2 = 0x94D049BB133111EBL;
+
+    /**
+     * Zobrist only offers static methods.
+     */
+    private Zobrist() {
+    }
+
+    /**
+     * Retrieves the key of a mark placed on a cell.
+     *
+     * @param cell     The index of the cell, row * size + col.
+     * @param markCode The ordinal of the mark, Mark.X.ordinal() or Mark.O.ordinal().
+     * @return The 64-bit key of the mark on the cell.
+     */
+
+    public static long key(int cell, int markCode) {
+        long z = (cell * 2L + markCode) * GOLDEN_GAMMA + GOLDEN_GAMMA;
+        z = (z ^ (z >>> 30)) * MIX_MULTIPLIER_1;
+        z = (z ^ (z >>> 27)) * MIX_MULTIPLIER_2;
+        return z ^ (z >>> 31);
+    }
+}